@@ -0,0 +1,74 @@
+package com.aquaa.tictactoe.benchmark;
+
+import com.aquaa.tictactoe.AILogic;
+import com.aquaa.tictactoe.BoardGeometry;
+import com.aquaa.tictactoe.CancellationToken;
+import com.aquaa.tictactoe.RandomSource;
+import com.aquaa.tictactoe.SearchLimits;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one AILogic.getAIMove call per difficulty and game stage, and of the same move through
+ * getAIMoveCell, which should allocate nothing.
+ *
+ * DIFFICULT searches to a fixed depth instead of the default time budget, which would only
+ * measure the budget itself. Run with "-prof gc" to get the allocation per move
+ * (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AIMoveBenchmark {
+
+    // Deep enough to exercise the search on larger boards, shallow enough for short iterations
+    private static final SearchLimits DIFFICULT_LIMITS = SearchLimits.depth(4);
+
+    @Param({"3x3", "5x5k4"})
+    public String board;
+
+    @Param({"EASY", "AVERAGE", "DIFFICULT"})
+    public AILogic.Difficulty difficulty;
+
+    @Param({"EMPTY", "MIDGAME", "NEAR_TERMINAL"})
+    public BenchmarkPositions.Stage stage;
+
+    private BoardGeometry geometry;
+    private String[][] cells;
+    private RandomSource random;
+    // Never cancelled
+    private final CancellationToken cancellation = new CancellationToken();
+
+    @Setup
+    public void setUp() {
+        geometry = BoardGeometry.parse(board);
+        cells = BenchmarkPositions.game(geometry, stage).getBoard();
+        random = RandomSource.seeded(1);
+    }
+
+    @Benchmark
+    public int[] getAIMove() {
+        return AILogic.getAIMove(cells, geometry, difficulty, BenchmarkPositions.X, BenchmarkPositions.O, DIFFICULT_LIMITS);
+    }
+
+    @Benchmark
+    public int getAIMoveCell() {
+        return AILogic.getAIMoveCell(cells, geometry, difficulty, BenchmarkPositions.X, BenchmarkPositions.O,
+                DIFFICULT_LIMITS, cancellation, random);
+    }
+}
@@ -0,0 +1,107 @@
+package com.aquaa.tictactoe.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written with "-rf csv", such as the committed baseline and a
+ * new run, and lists every benchmark whose score changed by more than a threshold.
+ * Lower is better for every metric here (time per operation, bytes per operation).
+ *
+ * Usage: BenchmarkDiff baseline.csv current.csv [thresholdPercent]
+ * Exits with status 1 if any benchmark got worse by more than the threshold.
+ */
+public class BenchmarkDiff {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkDiff baseline.csv current.csv [thresholdPercent]");
+            System.exit(2);
+        }
+        Map<String, Double> baseline = readScores(args[0]);
+        Map<String, Double> current = readScores(args[1]);
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+
+        int regressions = 0;
+        for (Map.Entry<String, Double> entry : current.entrySet()) {
+            Double before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.println("new        " + entry.getKey());
+                continue;
+            }
+            double change = before == 0 ? 0 : (entry.getValue() - before) / before * 100;
+            if (change > threshold) {
+                regressions++;
+                System.out.printf("WORSE %+6.1f%% %s (%.3f -> %.3f)%n", change, entry.getKey(), before, entry.getValue());
+            } else if (change < -threshold) {
+                System.out.printf("better %+5.1f%% %s (%.3f -> %.3f)%n", change, entry.getKey(), before, entry.getValue());
+            }
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.println("missing    " + key);
+            }
+        }
+        System.out.println(regressions + " regression(s) above " + threshold + "%");
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads a JMH CSV file into scores keyed by benchmark name and parameter values.
+     */
+    private static Map<String, Double> readScores(String path) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
+        Map<String, Double> scores = new LinkedHashMap<>();
+        if (lines.isEmpty()) {
+            return scores;
+        }
+        List<String> header = splitCsv(lines.get(0));
+        int nameColumn = header.indexOf("Benchmark");
+        int scoreColumn = header.indexOf("Score");
+        int unitColumn = header.indexOf("Unit");
+        for (String line : lines.subList(1, lines.size())) {
+            List<String> fields = splitCsv(line);
+            if (fields.size() < header.size()) {
+                continue;
+            }
+            StringBuilder key = new StringBuilder(fields.get(nameColumn));
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && !fields.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring(7)).append('=').append(fields.get(i));
+                }
+            }
+            key.append(" [").append(fields.get(unitColumn)).append(']');
+            scores.put(key.toString(), Double.parseDouble(fields.get(scoreColumn)));
+        }
+        return scores;
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (ch == '"') {
+                quoted = !quoted;
+            } else if (ch == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
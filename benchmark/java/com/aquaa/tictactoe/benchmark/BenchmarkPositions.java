@@ -0,0 +1,77 @@
+package com.aquaa.tictactoe.benchmark;
+
+import com.aquaa.tictactoe.BoardGeometry;
+import com.aquaa.tictactoe.GameState;
+
+import java.util.Random;
+
+/**
+ * Fixed positions shared by the benchmarks, so every run measures the same boards.
+ */
+public final class BenchmarkPositions {
+
+    public static final String X = "X";
+    public static final String O = "O";
+
+    /** How far the game has progressed. */
+    public enum Stage {
+        EMPTY, MIDGAME, NEAR_TERMINAL
+    }
+
+    private BenchmarkPositions() {
+    }
+
+    /**
+     * Builds a game at the given stage with X to move: no marks, half the board filled, or
+     * all but two cells filled. The marks are placed pseudo-randomly from a fixed seed and
+     * never complete a line, so the game is still running.
+     */
+    public static GameState game(BoardGeometry geometry, Stage stage) {
+        int cells = geometry.getCellCount();
+        int filled;
+        switch (stage) {
+            case MIDGAME:
+                filled = cells / 2;
+                break;
+            case NEAR_TERMINAL:
+                filled = cells - 2;
+                break;
+            default:
+                filled = 0;
+                break;
+        }
+        filled -= filled % 2; // Equal numbers of X and O, so X moves next
+
+        for (long seed = 1; ; seed++) {
+            GameState game = fill(geometry, filled, new Random(seed));
+            if (game != null) {
+                return game;
+            }
+        }
+    }
+
+    /**
+     * Places the marks, or returns null if every cell left would complete a line.
+     */
+    private static GameState fill(BoardGeometry geometry, int filled, Random random) {
+        GameState game = new GameState(geometry);
+        for (int move = 0; move < filled; move++) {
+            String player = move % 2 == 0 ? X : O;
+            boolean placed = false;
+            int start = random.nextInt(geometry.getCellCount());
+            for (int i = 0; i < geometry.getCellCount() && !placed; i++) {
+                int cell = (start + i) % geometry.getCellCount();
+                int r = geometry.row(cell);
+                int c = geometry.column(cell);
+                // A move that would end the game is skipped
+                if (game.isCellEmpty(r, c) && !game.isWinningMove(r, c, player)) {
+                    placed = game.makeMove(r, c, player);
+                }
+            }
+            if (!placed) {
+                return null;
+            }
+        }
+        return game;
+    }
+}
@@ -0,0 +1,84 @@
+package com.aquaa.tictactoe.benchmark;
+
+import com.aquaa.tictactoe.BoardGeometry;
+import com.aquaa.tictactoe.GameState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the GameState checks run after every move, and of the undo/redo history.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameStateBenchmark {
+
+    @Param({"3x3", "5x5k4", "8x8k5"})
+    public String board;
+
+    @Param({"EMPTY", "MIDGAME", "NEAR_TERMINAL"})
+    public BenchmarkPositions.Stage stage;
+
+    private GameState game;
+    private int freeRow;
+    private int freeColumn;
+
+    @Setup
+    public void setUp() {
+        game = BenchmarkPositions.game(BoardGeometry.parse(board), stage);
+        String[][] cells = game.getCurrentBoardState();
+        for (int r = cells.length - 1; r >= 0; r--) {
+            for (int c = cells[r].length - 1; c >= 0; c--) {
+                if (cells[r][c].isEmpty()) {
+                    freeRow = r;
+                    freeColumn = c;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public String checkWinner() {
+        return game.checkWinner();
+    }
+
+    @Benchmark
+    public boolean isBoardFull() {
+        return game.isBoardFull();
+    }
+
+    /**
+     * Makes a move and takes it back, so every invocation starts from the same position.
+     */
+    @Benchmark
+    public int makeAndUndoMove() {
+        game.makeMove(freeRow, freeColumn, BenchmarkPositions.X);
+        game.undoMove();
+        return game.getMoveCount();
+    }
+
+    /**
+     * Undoes the last move and redoes it.
+     */
+    @Benchmark
+    public int undoAndRedoMove() {
+        game.undoMove();
+        game.redoMove();
+        return game.getMoveCount();
+    }
+}
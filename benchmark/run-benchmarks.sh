@@ -0,0 +1,36 @@
+#!/bin/sh
+# Compiles the engine and the benchmarks on a plain JVM and runs them with the GC profiler.
+#
+# JMH_CLASSPATH must list jmh-core, jmh-generator-annprocess and their dependencies
+# (jopt-simple, commons-math3), e.g. the jars from a local Maven repository.
+#
+# Usage: benchmark/run-benchmarks.sh [output.csv] [extra JMH options...]
+#   With no output file the results go to benchmark/results/current.csv.
+#   To refresh the baseline: benchmark/run-benchmarks.sh benchmark/results/baseline.csv
+set -e
+
+if [ -z "$JMH_CLASSPATH" ]; then
+    echo "Set JMH_CLASSPATH to the JMH jars" >&2
+    exit 2
+fi
+
+root=$(cd "$(dirname "$0")/.." && pwd)
+output=${1:-$root/benchmark/results/current.csv}
+[ $# -gt 0 ] && shift
+build=$root/benchmark/build
+
+# Only the engine classes the benchmarks reach are compiled; the activities need Android
+rm -rf "$build"
+mkdir -p "$build" "$(dirname "$output")"
+javac -d "$build" -cp "$JMH_CLASSPATH" -sourcepath "$root/main/java" -implicit:class \
+    "$root"/benchmark/java/com/aquaa/tictactoe/benchmark/*.java
+
+java -cp "$build:$JMH_CLASSPATH" org.openjdk.jmh.Main \
+    -prof gc -rf csv -rff "$output" "$@"
+
+# Compared by absolute path, so recording the baseline never diffs it against itself
+output=$(cd "$(dirname "$output")" && pwd)/$(basename "$output")
+if [ -f "$root/benchmark/results/baseline.csv" ] && [ "$output" != "$root/benchmark/results/baseline.csv" ]; then
+    java -cp "$build" com.aquaa.tictactoe.benchmark.BenchmarkDiff \
+        "$root/benchmark/results/baseline.csv" "$output"
+fi
@@ -0,0 +1,247 @@
+package com.aquaa.tictactoe;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes AI moves on a background thread, so a long search never blocks the UI thread.
+ *
+ * Every request gets a CancellationToken. Cancelling it stops the search and drops the
+ * result, so a move computed for an old board is never played. Results are handed to the
+ * callback executor (the UI thread in GameActivity), but no earlier than the requested
+ * minimum display time after the request; the search runs during that time instead of
+ * after it.
+ *
+ * While the human is choosing a move, the executor can ponder: search the AI's reply to each
+ * likely human move on a low-priority thread, keeping the replies in a bounded cache. When the
+ * human plays a pondered move, the move request is answered from the cache without a search.
+ * Only DIFFICULT and MONTE_CARLO moves are pondered; the other levels answer at once anyway.
+ */
+public final class AIExecutor {
+
+    public interface MoveCallback {
+        /**
+         * @param move The row and column of the AI's move, or null if no move was found.
+         */
+        void onMove(int[] move);
+    }
+
+    // Pondered replies kept, least recently used dropped first
+    private static final int PONDER_CACHE_SIZE = 64;
+
+    private final Executor callbackExecutor;
+    private final ScheduledExecutorService worker;
+    private final ExecutorService ponderer;
+    private CancellationToken ponderToken; // Token of the pondering running, null if none
+
+    // Replies by the position after the human's move; guarded by itself
+    private final Map<Long, PonderedMove> ponderedMoves = new LinkedHashMap<Long, PonderedMove>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, PonderedMove> eldest) {
+            return size() > PONDER_CACHE_SIZE;
+        }
+    };
+
+    /** A reply found by pondering, with the position it answers to tell colliding keys apart. */
+    private static final class PonderedMove {
+        final BoardGeometry geometry;
+        final AILogic.Difficulty difficulty;
+        final long aiMask;
+        final long humanMask;
+        final int[] move;
+
+        PonderedMove(BoardGeometry geometry, AILogic.Difficulty difficulty, long aiMask, long humanMask, int[] move) {
+            this.geometry = geometry;
+            this.difficulty = difficulty;
+            this.aiMask = aiMask;
+            this.humanMask = humanMask;
+            this.move = move;
+        }
+    }
+
+    /**
+     * @param callbackExecutor Runs the callbacks, e.g. a post to the UI thread's Handler.
+     */
+    public AIExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        this.worker = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "ai-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ponderer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ai-ponder");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY); // Pondering must not slow down the UI
+            return thread;
+        });
+    }
+
+    /**
+     * Starts computing a move for the given board. Stops pondering; if the position was
+     * pondered, the move comes from the cache without a search.
+     *
+     * @param board A copy of the board; it must not change while the move is computed.
+     * @param minDisplayMillis The callback runs no earlier than this long after the request.
+     * @param callback Receives the move, unless the request is cancelled first.
+     * @return The token that cancels this request.
+     */
+    public CancellationToken requestMove(String[][] board, BoardGeometry geometry, AILogic.Difficulty difficulty,
+                                         String aiPlayer, String humanPlayer, long minDisplayMillis, MoveCallback callback) {
+        stopPondering();
+        int[] pondered = getPonderedMove(board, geometry, difficulty, aiPlayer, humanPlayer);
+        CancellationToken token = new CancellationToken();
+        long readyAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(minDisplayMillis);
+        worker.execute(() -> {
+            if (token.isCancelled()) {
+                return;
+            }
+            int[] move = pondered;
+            try {
+                if (move == null) {
+                    move = AILogic.getAIMove(board, geometry, difficulty, aiPlayer, humanPlayer, AILogic.DEFAULT_LIMITS, token);
+                } else {
+                    AILogic.reportPrecomputedMove(difficulty, move);
+                }
+            } catch (RuntimeException e) {
+                move = null; // Reported to the callback like a missing move
+            }
+            if (token.isCancelled()) {
+                return;
+            }
+
+            int[] result = move;
+            Runnable delivery = () -> callbackExecutor.execute(() -> {
+                // Checked again on the callback thread, where the caller cancels
+                if (!token.isCancelled()) {
+                    callback.onMove(result);
+                }
+            });
+            long remaining = readyAt - System.nanoTime();
+            if (remaining > 0) {
+                worker.schedule(delivery, remaining, TimeUnit.NANOSECONDS);
+            } else {
+                delivery.run();
+            }
+        });
+        return token;
+    }
+
+    /**
+     * Starts pondering the human's turn: the AI's replies to the human's moves are searched
+     * one after the other, the human's best moves first, until all are cached or pondering
+     * stops. Stops any pondering already running.
+     *
+     * @param board A copy of the board, with the human to move; it must not change while pondering.
+     */
+    public void startPondering(String[][] board, BoardGeometry geometry, AILogic.Difficulty difficulty,
+                               String aiPlayer, String humanPlayer) {
+        stopPondering();
+        if (difficulty != AILogic.Difficulty.DIFFICULT && difficulty != AILogic.Difficulty.MONTE_CARLO) {
+            return;
+        }
+        CancellationToken token = new CancellationToken();
+        ponderToken = token;
+        ponderer.execute(() -> {
+            try {
+                ponder(board, geometry, difficulty, aiPlayer, humanPlayer, token);
+            } catch (RuntimeException e) {
+                // Pondering is only a head start; the move request searches again
+            }
+        });
+    }
+
+    /**
+     * Stops pondering, if it is running. The replies found so far stay cached.
+     */
+    public void stopPondering() {
+        if (ponderToken != null) {
+            ponderToken.cancel();
+            ponderToken = null;
+        }
+    }
+
+    private void ponder(String[][] board, BoardGeometry geometry, AILogic.Difficulty difficulty,
+                        String aiPlayer, String humanPlayer, CancellationToken token) {
+        // The human's best moves are the most likely ones, so they are pondered first. None of
+        // these searches is reported to the SearchListener, as their moves may never be played
+        BoardAnalysis analysis = AILogic.analyze(board, geometry, humanPlayer, aiPlayer, AILogic.DEFAULT_LIMITS, token);
+        int[] cells = new int[Long.bitCount(analysis.getMoves())];
+        int count = 0;
+        for (long rest = analysis.getMoves(); rest != 0; rest &= rest - 1) {
+            cells[count++] = Long.numberOfTrailingZeros(rest);
+        }
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            int score = analysis.getScore(geometry.row(cells[i]), geometry.column(cells[i]));
+            order[i] = (long) -score << 8 | cells[i]; // Highest score first, then cell order
+        }
+        Arrays.sort(order);
+
+        long aiMask = geometry.fromBoard(board, aiPlayer);
+        for (long entry : order) {
+            if (token.isCancelled()) {
+                return;
+            }
+            int cell = (int) (entry & 0xff);
+            long humanMask = geometry.fromBoard(board, humanPlayer) | 1L << cell;
+            if (geometry.isWin(humanMask) || (aiMask | humanMask) == geometry.getFullMask()) {
+                continue; // The game ends with this move, so the AI has no reply to find
+            }
+            long key = geometry.positionKey(aiMask, humanMask);
+            synchronized (ponderedMoves) {
+                if (matches(ponderedMoves.get(key), geometry, difficulty, aiMask, humanMask)) {
+                    continue;
+                }
+            }
+
+            String[][] next = new String[board.length][];
+            for (int r = 0; r < board.length; r++) {
+                next[r] = board[r].clone();
+            }
+            next[geometry.row(cell)][geometry.column(cell)] = humanPlayer;
+            int[] move = AILogic.getUnreportedAIMove(next, geometry, difficulty, aiPlayer, humanPlayer, AILogic.DEFAULT_LIMITS, token);
+            if (token.isCancelled() || move == null) {
+                return; // A search cut short may be weaker than a full one, so it is not kept
+            }
+            synchronized (ponderedMoves) {
+                ponderedMoves.put(key, new PonderedMove(geometry, difficulty, aiMask, humanMask, move));
+            }
+        }
+    }
+
+    /**
+     * Returns the pondered reply for the board, or null if it was not pondered.
+     */
+    private int[] getPonderedMove(String[][] board, BoardGeometry geometry, AILogic.Difficulty difficulty,
+                                  String aiPlayer, String humanPlayer) {
+        long aiMask = geometry.fromBoard(board, aiPlayer);
+        long humanMask = geometry.fromBoard(board, humanPlayer);
+        synchronized (ponderedMoves) {
+            PonderedMove pondered = ponderedMoves.get(geometry.positionKey(aiMask, humanMask));
+            return matches(pondered, geometry, difficulty, aiMask, humanMask) ? pondered.move.clone() : null;
+        }
+    }
+
+    private static boolean matches(PonderedMove pondered, BoardGeometry geometry, AILogic.Difficulty difficulty,
+                                   long aiMask, long humanMask) {
+        return pondered != null && pondered.geometry == geometry && pondered.difficulty == difficulty
+                && pondered.aiMask == aiMask && pondered.humanMask == humanMask;
+    }
+
+    /**
+     * Stops the worker and pondering threads. Requests still running are abandoned without a callback.
+     */
+    public void shutdown() {
+        stopPondering();
+        worker.shutdownNow();
+        ponderer.shutdownNow();
+    }
+}
@@ -1,17 +1,79 @@
 package com.aquaa.tictactoe; // Remember to replace with your package name
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class AILogic {
 
     public enum Difficulty {
-        EASY, AVERAGE, DIFFICULT
+        EASY, AVERAGE, DIFFICULT,
+        /** Monte Carlo tree search: plays well on large boards within any time budget. */
+        MONTE_CARLO,
+        /** Between AVERAGE and DIFFICULT: also makes and stops forks, but does not search. */
+        ADVANCED
     }
 
+    /** Returned by getAIMoveCell when there is no move. */
+    public static final int NO_MOVE = -1;
+
+    /** Time budget of a DIFFICULT move when the caller does not give one. */
+    public static final long DEFAULT_MOVE_TIME_MILLIS = 50;
+    static final SearchLimits DEFAULT_LIMITS = SearchLimits.time(DEFAULT_MOVE_TIME_MILLIS);
+
+    private static volatile boolean perfectPlayTableEnabled = true;
+    private static volatile int searchParallelism = 1;
+    private static volatile SearchListener searchListener;
+    private static volatile Callable<OpeningBook> openingBookLoader;
+    private static volatile OpeningBook openingBook;
+    private static volatile Callable<Tablebase> tablebaseLoader;
+    private static volatile Tablebase tablebase;
+
+    // Shared between searches; stored scores do not depend on the search depth, so entries stay valid
+    private static final TranspositionTable transpositionTable = new TranspositionTable(16);
+
+    // Search state is per search, so every thread that asks for a move gets its own engine
+    private static final ThreadLocal<SearchEngine> searchEngines = new ThreadLocal<SearchEngine>() {
+        @Override
+        protected SearchEngine initialValue() {
+            return new SearchEngine(transpositionTable, searchParallelism);
+        }
+    };
+
+    // Used when the caller gives no random source; draws from the calling thread's generator
+    private static final RandomSource THREAD_LOCAL_RANDOM = new RandomSource() {
+        @Override
+        public int nextInt(int bound) {
+            return ThreadLocalRandom.current().nextInt(bound);
+        }
+
+        @Override
+        public long nextLong() {
+            return ThreadLocalRandom.current().nextLong();
+        }
+    };
+
+    private static final ThreadLocal<ThreatAnalyzer> threatAnalyzers = new ThreadLocal<ThreatAnalyzer>() {
+        @Override
+        protected ThreatAnalyzer initialValue() {
+            return new ThreatAnalyzer();
+        }
+    };
+
+    // Trees are kept between moves, so a thread's consecutive searches can build on each other
+    private static final ThreadLocal<MctsEngine> mctsEngines = new ThreadLocal<MctsEngine>() {
+        @Override
+        protected MctsEngine initialValue() {
+            return new MctsEngine(MctsEngine.DEFAULT_CAPACITY, searchParallelism);
+        }
+    };
+
     /**
      * Determines the AI's move based on the specified difficulty.
+     * The board geometry is derived from the board's size, see BoardGeometry.forBoard.
      *
      * @param board The current game board.
      * @param difficulty The AI difficulty level.
@@ -20,257 +82,696 @@ public class AILogic {
      * @return An array of two integers representing the row and column of the AI's move, or null if no move is possible.
      */
     public static int[] getAIMove(String[][] board, Difficulty difficulty, String aiPlayer, String humanPlayer) {
+        return getAIMove(board, BoardGeometry.forBoard(board), difficulty, aiPlayer, humanPlayer);
+    }
+
+    /**
+     * Determines the AI's move on a board of the given geometry.
+     *
+     * @param board The current game board.
+     * @param geometry The board size and win length.
+     * @param difficulty The AI difficulty level.
+     * @param aiPlayer The symbol of the AI player (e.g., "O").
+     * @param humanPlayer The symbol of the human player (e.g., "X").
+     * @return An array of two integers representing the row and column of the AI's move, or null if no move is possible.
+     */
+    public static int[] getAIMove(String[][] board, BoardGeometry geometry, Difficulty difficulty, String aiPlayer, String humanPlayer) {
+        return getAIMove(board, geometry, difficulty, aiPlayer, humanPlayer, DEFAULT_LIMITS);
+    }
+
+    /**
+     * Determines the AI's move on a board of the given geometry within a search budget.
+     * Only the DIFFICULT and MONTE_CARLO searches use the budget; the other levels always
+     * answer at once. MONTE_CARLO counts playouts against the node limit and ignores the depth.
+     *
+     * @param board The current game board.
+     * @param geometry The board size and win length.
+     * @param difficulty The AI difficulty level.
+     * @param aiPlayer The symbol of the AI player (e.g., "O").
+     * @param humanPlayer The symbol of the human player (e.g., "X").
+     * @param limits Time and node budget for the search.
+     * @return An array of two integers representing the row and column of the AI's move, or null if no move is possible.
+     */
+    public static int[] getAIMove(String[][] board, BoardGeometry geometry, Difficulty difficulty, String aiPlayer, String humanPlayer, SearchLimits limits) {
+        return getAIMove(board, geometry, difficulty, aiPlayer, humanPlayer, limits, CancellationToken.NONE);
+    }
+
+    /**
+     * Determines the AI's move within a search budget, stopping early if the token is cancelled.
+     * Meant for searches off the UI thread, see AIExecutor.
+     *
+     * @param board The current game board.
+     * @param geometry The board size and win length.
+     * @param difficulty The AI difficulty level.
+     * @param aiPlayer The symbol of the AI player (e.g., "O").
+     * @param humanPlayer The symbol of the human player (e.g., "X").
+     * @param limits Time and node budget for the search.
+     * @param cancellation Stops the search when cancelled.
+     * @return An array of two integers representing the row and column of the AI's move, or null if no move is possible
+     *         or the search was cancelled before it found one.
+     */
+    public static int[] getAIMove(String[][] board, BoardGeometry geometry, Difficulty difficulty, String aiPlayer, String humanPlayer,
+                                  SearchLimits limits, CancellationToken cancellation) {
+        return toMove(geometry, getAIMoveCell(board, geometry, difficulty, aiPlayer, humanPlayer, limits, cancellation, THREAD_LOCAL_RANDOM));
+    }
+
+    /**
+     * Determines the AI's move, drawing every random choice (random moves, picks among equally
+     * good moves) from the given generator. With a seeded generator and a depth limit the move
+     * is reproducible.
+     *
+     * @param board The current game board.
+     * @param geometry The board size and win length.
+     * @param difficulty The AI difficulty level.
+     * @param aiPlayer The symbol of the AI player (e.g., "O").
+     * @param humanPlayer The symbol of the human player (e.g., "X").
+     * @param limits Time and node budget for the search.
+     * @param cancellation Stops the search when cancelled.
+     * @param random Source of the AI's random choices.
+     * @return An array of two integers representing the row and column of the AI's move, or null if no move is possible
+     *         or the search was cancelled before it found one.
+     */
+    public static int[] getAIMove(String[][] board, BoardGeometry geometry, Difficulty difficulty, String aiPlayer, String humanPlayer,
+                                  SearchLimits limits, CancellationToken cancellation, Random random) {
+        return toMove(geometry, getAIMoveCell(board, geometry, difficulty, aiPlayer, humanPlayer, limits, cancellation, RandomSource.of(random)));
+    }
+
+    /**
+     * Determines the AI's move as a cell index, row * columns + column. Unlike getAIMove this
+     * allocates nothing (unless a SearchListener is set), so self-play can run without
+     * garbage; with a seeded source and a depth or node limit the move is reproducible.
+     * The board is only read, so GameState.getCurrentBoardState can be passed.
+     *
+     * @param board The current game board.
+     * @param geometry The board size and win length.
+     * @param difficulty The AI difficulty level.
+     * @param aiPlayer The symbol of the AI player (e.g., "O").
+     * @param humanPlayer The symbol of the human player (e.g., "X").
+     * @param limits Time and node budget for the search.
+     * @param cancellation Stops the search when cancelled.
+     * @param random Source of the AI's random choices.
+     * @return The cell of the move, or NO_MOVE if no move is possible or the search was cancelled
+     *         before it found one.
+     */
+    public static int getAIMoveCell(String[][] board, BoardGeometry geometry, Difficulty difficulty, String aiPlayer, String humanPlayer,
+                                    SearchLimits limits, CancellationToken cancellation, RandomSource random) {
+        return getAIMoveCell(board, geometry, difficulty, aiPlayer, humanPlayer, limits, cancellation, random, searchListener);
+    }
+
+    /**
+     * Determines the AI's move like getAIMove, but reports nothing to the SearchListener. Meant
+     * for speculative searches whose move may never be played, such as AIExecutor's pondering;
+     * their searches still warm up the shared transposition table and count in its totals.
+     */
+    static int[] getUnreportedAIMove(String[][] board, BoardGeometry geometry, Difficulty difficulty, String aiPlayer, String humanPlayer,
+                                     SearchLimits limits, CancellationToken cancellation) {
+        return toMove(geometry, getAIMoveCell(board, geometry, difficulty, aiPlayer, humanPlayer, limits, cancellation,
+                THREAD_LOCAL_RANDOM, null));
+    }
+
+    /**
+     * Reports a move found before it was requested, e.g. by pondering, to the SearchListener as
+     * a move that cost nothing: no search, no nodes and no time.
+     */
+    static void reportPrecomputedMove(Difficulty difficulty, int[] move) {
+        SearchListener listener = searchListener;
+        if (listener != null) {
+            int[][] line = move != null ? new int[][]{move.clone()} : new int[0][];
+            listener.onSearchFinished(new SearchStats(difficulty, false, 0, 0, 0, 0, -1, 0, 0, line));
+        }
+    }
+
+    /**
+     * @param listener Receives the move's statistics, or null for none.
+     */
+    private static int getAIMoveCell(String[][] board, BoardGeometry geometry, Difficulty difficulty, String aiPlayer, String humanPlayer,
+                                     SearchLimits limits, CancellationToken cancellation, RandomSource random,
+                                     SearchListener listener) {
+        long startNanos = listener != null ? System.nanoTime() : 0;
+        int cell;
         switch (difficulty) {
             case EASY:
-                return getRandomMove(board);
+                cell = getRandomMove(board, geometry, random);
+                break;
             case AVERAGE:
-                return getAverageMove(board, aiPlayer, humanPlayer);
+                cell = getAverageMove(board, geometry, aiPlayer, humanPlayer, random);
+                break;
+            case ADVANCED:
+                cell = getAdvancedMove(board, geometry, aiPlayer, humanPlayer, random);
+                break;
             case DIFFICULT:
-                return getDifficultMove(board, aiPlayer, humanPlayer);
+                return getDifficultMove(board, geometry, aiPlayer, humanPlayer, limits, cancellation, random, listener, startNanos);
+            case MONTE_CARLO:
+                return getMonteCarloMove(board, geometry, aiPlayer, humanPlayer, limits, cancellation, random, listener, startNanos);
             default:
-                return getRandomMove(board);
+                cell = getRandomMove(board, geometry, random);
+                break;
         }
+        if (listener != null) {
+            int[][] line = cell != NO_MOVE ? new int[][]{toMove(geometry, cell)} : new int[0][];
+            listener.onSearchFinished(new SearchStats(difficulty, false, 0, 0, 0, 0, -1,
+                    System.nanoTime() - startNanos, 0, line));
+        }
+        return cell;
     }
 
     /**
-     * Easy AI: Makes a random valid move.
+     * Scores every move of the position for player, who is to move, e.g. for a hint overlay.
+     * The board geometry is derived from the board's size, see BoardGeometry.forBoard.
+     *
+     * @see #analyze(String[][], BoardGeometry, String, String, SearchLimits, CancellationToken)
      */
-    private static int[] getRandomMove(String[][] board) {
-        List<int[]> emptyCells = new ArrayList<>();
-        for (int r = 0; r < 3; r++) {
-            for (int c = 0; c < 3; c++) {
-                if (board[r][c].isEmpty()) {
-                    emptyCells.add(new int[]{r, c});
-                }
+    public static BoardAnalysis analyze(String[][] board, String player, String opponent, SearchLimits limits) {
+        return analyze(board, BoardGeometry.forBoard(board), player, opponent, limits, CancellationToken.NONE);
+    }
+
+    /**
+     * Scores every move of the position for player, who is to move, with one DIFFICULT search
+     * in which the moves share their transposition table entries. This is much cheaper than a
+     * getAIMove call per cell, but dearer than one getAIMove call, as every move needs its exact
+     * score rather than a bound. The search deepens until the limits run out, so pass a depth
+     * or node limit for reproducible scores, or UNLIMITED to solve the position.
+     *
+     * @param board The current game board.
+     * @param geometry The board size and win length.
+     * @param player The symbol of the player to move.
+     * @param opponent The symbol of the other player.
+     * @param limits Time and node budget for the search.
+     * @param cancellation Stops the search when cancelled.
+     * @return The analysis; it has no moves if the game is over or the search was cancelled
+     *         before it scored them.
+     */
+    public static BoardAnalysis analyze(String[][] board, BoardGeometry geometry, String player, String opponent,
+                                        SearchLimits limits, CancellationToken cancellation) {
+        long startNanos = System.nanoTime();
+        long ownMask = geometry.fromBoard(board, player);
+        long otherMask = geometry.fromBoard(board, opponent);
+        int[] scores = new int[geometry.getCellCount()];
+        if (geometry.isWin(ownMask) || geometry.isWin(otherMask)) {
+            return new BoardAnalysis(geometry, 0, scores, true, 0, 0, System.nanoTime() - startNanos);
+        }
+
+        SearchEngine engine = getSearchEngine();
+        long moves = engine.analyze(geometry, ownMask, otherMask, limits, cancellation);
+        boolean allForced = true;
+        for (long rest = moves; rest != 0; rest &= rest - 1) {
+            int cell = Long.numberOfTrailingZeros(rest);
+            scores[cell] = engine.getMoveScore(cell);
+            allForced &= Math.abs(scores[cell]) > SearchEngine.WIN_THRESHOLD;
+        }
+        // Every outcome is known if the search went as deep as there are moves, or stopped
+        // early because every move already has a forced result
+        boolean complete = moves != 0 ? allForced || engine.getCompletedDepth() >= Long.bitCount(moves)
+                : (ownMask | otherMask) == geometry.getFullMask();
+        return new BoardAnalysis(geometry, moves, scores, complete, engine.getCompletedDepth(),
+                engine.getNodes(), System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Analyzes many positions of one geometry in parallel on the common ForkJoinPool, e.g. every
+     * position of a finished game for a review. The player to move in each position is the one
+     * that started the game, unless it has more marks than the other. The limits apply to each
+     * position separately.
+     *
+     * @param boards The positions; they must not change while they are analyzed.
+     * @param geometry The board size and win length.
+     * @param firstPlayer The symbol of the player who moved first.
+     * @param secondPlayer The symbol of the other player.
+     * @param limits Time and node budget for each position's search.
+     * @param cancellation Stops all searches when cancelled.
+     * @return The analyses, in the order of the boards.
+     */
+    public static BoardAnalysis[] analyze(List<String[][]> boards, BoardGeometry geometry, String firstPlayer, String secondPlayer,
+                                          SearchLimits limits, CancellationToken cancellation) {
+        BoardAnalysis[] analyses = new BoardAnalysis[boards.size()];
+        ForkJoinPool.commonPool().invoke(new AnalysisRange(boards, geometry, firstPlayer, secondPlayer, limits, cancellation,
+                analyses, 0, analyses.length));
+        return analyses;
+    }
+
+    /** Analyzes the boards [from, to), splitting the range until each task has one board. */
+    private static final class AnalysisRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // Tasks are never serialized
+        private final transient List<String[][]> boards;
+        private final transient BoardGeometry geometry;
+        private final String firstPlayer;
+        private final String secondPlayer;
+        private final transient SearchLimits limits;
+        private final transient CancellationToken cancellation;
+        private final transient BoardAnalysis[] analyses;
+        private final int from;
+        private final int to;
+
+        AnalysisRange(List<String[][]> boards, BoardGeometry geometry, String firstPlayer, String secondPlayer,
+                      SearchLimits limits, CancellationToken cancellation, BoardAnalysis[] analyses, int from, int to) {
+            this.boards = boards;
+            this.geometry = geometry;
+            this.firstPlayer = firstPlayer;
+            this.secondPlayer = secondPlayer;
+            this.limits = limits;
+            this.cancellation = cancellation;
+            this.analyses = analyses;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new AnalysisRange(boards, geometry, firstPlayer, secondPlayer, limits, cancellation, analyses, from, middle),
+                        new AnalysisRange(boards, geometry, firstPlayer, secondPlayer, limits, cancellation, analyses, middle, to));
+                return;
+            }
+            if (from < to) {
+                String[][] board = boards.get(from);
+                long first = geometry.fromBoard(board, firstPlayer);
+                long second = geometry.fromBoard(board, secondPlayer);
+                boolean firstToMove = Long.bitCount(first) <= Long.bitCount(second);
+                analyses[from] = firstToMove
+                        ? AILogic.analyze(board, geometry, firstPlayer, secondPlayer, limits, cancellation)
+                        : AILogic.analyze(board, geometry, secondPlayer, firstPlayer, limits, cancellation);
             }
         }
-        if (!emptyCells.isEmpty()) {
-            Random random = new Random();
-            return emptyCells.get(random.nextInt(emptyCells.size()));
+    }
+
+    /**
+     * Enables or disables the precomputed perfect-play table for DIFFICULT moves on 3x3.
+     * When disabled, every DIFFICULT move runs a full search instead.
+     */
+    public static void setPerfectPlayTableEnabled(boolean enabled) {
+        perfectPlayTableEnabled = enabled;
+    }
+
+    /**
+     * Sets the number of threads a DIFFICULT search splits its root moves over, and the number
+     * of threads growing a MONTE_CARLO tree.
+     * With a depth limit the chosen DIFFICULT moves are the same for any number of threads;
+     * with a time limit more threads reach deeper in the same time.
+     *
+     * @param threads Number of search threads; 1 searches on the calling thread.
+     */
+    public static void setSearchParallelism(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Search parallelism must be at least 1, got " + threads);
+        }
+        searchParallelism = threads;
+    }
+
+    /**
+     * Sets the listener that receives the statistics of every AI move, or null for none.
+     * Statistics (timing, the principal variation) are only gathered while a listener is set.
+     * AIExecutor's pondering searches are not reported; a pondered reply is reported once it
+     * is played, as a move that cost nothing.
+     */
+    public static void setSearchListener(SearchListener listener) {
+        searchListener = listener;
+    }
+
+    /**
+     * Sets how to load the opening book, or null for none. The loader runs on the first
+     * DIFFICULT move that is not answered by the perfect-play table, on the searching thread;
+     * if it fails, the AI searches without a book.
+     */
+    public static void setOpeningBook(Callable<OpeningBook> loader) {
+        synchronized (AILogic.class) {
+            openingBookLoader = loader;
+            openingBook = null;
+        }
+    }
+
+    /**
+     * Sets how to load the tablebase, or null for none. Like the opening book, it is loaded on
+     * the first DIFFICULT move that needs it; on its board it then answers every DIFFICULT move,
+     * before the opening book and without searching.
+     */
+    public static void setTablebase(Callable<Tablebase> loader) {
+        synchronized (AILogic.class) {
+            tablebaseLoader = loader;
+            tablebase = null;
         }
-        return null; // No empty cells
+    }
+
+    /**
+     * Returns the transposition table used by the DIFFICULT search.
+     * It is shared by every search thread of the process, so its counters are totals over all
+     * searches since the process started. The table hits of a single move are reported to the
+     * SearchListener, see SearchStats.getTableHits.
+     */
+    public static TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    /**
+     * Easy AI: Makes a random valid move.
+     */
+    private static int getRandomMove(String[][] board, BoardGeometry geometry, RandomSource random) {
+        long empty = emptyCells(board, geometry);
+        if (empty != 0) {
+            return pickRandomCell(empty, random);
+        }
+        return NO_MOVE; // No empty cells
     }
 
     /**
      * Average AI: Blocks immediate threats and wins if possible (looks one step ahead).
      */
-    private static int[] getAverageMove(String[][] board, String aiPlayer, String humanPlayer) {
+    private static int getAverageMove(String[][] board, BoardGeometry geometry, String aiPlayer, String humanPlayer, RandomSource random) {
+        ThreatAnalyzer threats = threatAnalyzers.get().analyze(board, geometry, aiPlayer, humanPlayer);
+
         // 1. Check for winning move for AI
-        int[] winningMove = findWinningMove(board, aiPlayer);
-        if (winningMove != null) {
-            return winningMove;
+        if (threats.getWins() != 0) {
+            return Long.numberOfTrailingZeros(threats.getWins());
         }
 
         // 2. Check to block human's winning move
-        int[] blockingMove = findWinningMove(board, humanPlayer);
-        if (blockingMove != null) {
-            return blockingMove;
+        if (threats.getBlocks() != 0) {
+            return Long.numberOfTrailingZeros(threats.getBlocks());
         }
 
+        return getPositionalMove(board, geometry, random);
+    }
+
+    /**
+     * Advanced AI: Like the Average AI, but also forks and stops the human's forks, either by
+     * forcing the human to block a threat elsewhere or by taking the fork square.
+     */
+    private static int getAdvancedMove(String[][] board, BoardGeometry geometry, String aiPlayer, String humanPlayer, RandomSource random) {
+        ThreatAnalyzer threats = threatAnalyzers.get().analyze(board, geometry, aiPlayer, humanPlayer);
+        long cells = threats.getWins();
+        if (cells == 0) {
+            cells = threats.getBlocks();
+        }
+        if (cells == 0) {
+            cells = threats.getForks();
+        }
+        if (cells == 0 && threats.getOpponentForks() != 0) {
+            cells = threats.getCounterForks() != 0 ? threats.getCounterForks() : threats.getOpponentForks();
+        }
+        if (cells != 0) {
+            return pickRandomCell(cells, random);
+        }
+        return getPositionalMove(board, geometry, random);
+    }
+
+    /**
+     * Helper for Average and Advanced AI: Center, then corners, then sides, then any cell.
+     */
+    private static int getPositionalMove(String[][] board, BoardGeometry geometry, RandomSource random) {
         // 3. Take center if available
-        if (board[1][1].isEmpty()) {
-            return new int[]{1, 1};
+        int cell = findEmptyCell(board, geometry, geometry.getCenterCells());
+        if (cell != NO_MOVE) {
+            return cell;
         }
 
         // 4. Take a corner if available
-        int[][] corners = {{0, 0}, {0, 2}, {2, 0}, {2, 2}};
-        for (int[] corner : corners) {
-            if (board[corner[0]][corner[1]].isEmpty()) {
-                return corner;
-            }
+        cell = findEmptyCell(board, geometry, geometry.getCornerCells());
+        if (cell != NO_MOVE) {
+            return cell;
         }
 
         // 5. Take any empty side if available
-        int[][] sides = {{0, 1}, {1, 0}, {1, 2}, {2, 1}};
-        for (int[] side : sides) {
-            if (board[side[0]][side[1]].isEmpty()) {
-                return side;
-            }
+        cell = findEmptyCell(board, geometry, geometry.getSideCells());
+        if (cell != NO_MOVE) {
+            return cell;
         }
 
         // If no strategic move, fall back to random
-        return getRandomMove(board);
+        return getRandomMove(board, geometry, random);
     }
 
     /**
-     * Helper for Average AI: Finds a move that leads to a win for the given player.
+     * Helper for Average AI: Returns the first empty cell of the given cells.
      */
-    private static int[] findWinningMove(String[][] board, String player) {
-        for (int r = 0; r < 3; r++) {
-            for (int c = 0; c < 3; c++) {
-                if (board[r][c].isEmpty()) {
-                    board[r][c] = player; // Temporarily make the move
-                    if (checkWinner(board, player)) {
-                        board[r][c] = ""; // Undo the temporary move
-                        return new int[]{r, c};
-                    }
-                    board[r][c] = ""; // Undo the temporary move
-                }
+    private static int findEmptyCell(String[][] board, BoardGeometry geometry, int[] cells) {
+        for (int cell : cells) {
+            if (board[geometry.row(cell)][geometry.column(cell)].isEmpty()) {
+                return cell;
             }
         }
-        return null;
+        return NO_MOVE;
     }
 
     /**
-     * Difficult AI: Uses Minimax with Alpha-Beta Pruning and randomization for equally optimal moves.
+     * Returns the mask of empty cells.
      */
-    private static int[] getDifficultMove(String[][] board, String aiPlayer, String humanPlayer) {
-        int bestScore = Integer.MIN_VALUE;
-        List<int[]> bestMoves = new ArrayList<>(); // Store all equally optimal moves
-
-        for (int r = 0; r < 3; r++) {
-            for (int c = 0; c < 3; c++) {
-                if (board[r][c].isEmpty()) {
-                    board[r][c] = aiPlayer; // Make the move
-                    int score = minimax(board, 0, false, aiPlayer, humanPlayer, Integer.MIN_VALUE, Integer.MAX_VALUE);
-                    board[r][c] = ""; // Undo the move
-
-                    if (score > bestScore) {
-                        bestScore = score;
-                        bestMoves.clear(); // Clear previous best moves, as a new best found
-                        bestMoves.add(new int[]{r, c});
-                    } else if (score == bestScore) {
-                        bestMoves.add(new int[]{r, c}); // Add to equally optimal moves
-                    }
-                }
+    private static long emptyCells(String[][] board, BoardGeometry geometry) {
+        long empty = 0;
+        for (int cell = 0; cell < geometry.getCellCount(); cell++) {
+            if (board[geometry.row(cell)][geometry.column(cell)].isEmpty()) {
+                empty |= 1L << cell;
             }
         }
-
-        // Randomly select one of the best moves to make AI less predictable
-        if (!bestMoves.isEmpty()) {
-            Random random = new Random();
-            return bestMoves.get(random.nextInt(bestMoves.size()));
-        }
-        return null; // Should not happen in a solvable game like Tic Tac Toe
+        return empty;
     }
 
     /**
-     * Minimax algorithm with Alpha-Beta Pruning.
-     *
-     * @param board The current board state.
-     * @param depth The current depth of recursion.
-     * @param isMaximizingPlayer True if the current call is for the maximizing player (AI).
-     * @param aiPlayer The AI's symbol.
-     * @param humanPlayer The human's symbol.
-     * @param alpha Alpha value for alpha-beta pruning.
-     * @param beta Beta value for alpha-beta pruning.
-     * @return The optimal score for the current board state.
-     */
-    private static int minimax(String[][] board, int depth, boolean isMaximizingPlayer, String aiPlayer, String humanPlayer, int alpha, int beta) {
-        String winner = checkGameEnd(board);
-
-        if (winner != null) {
-            if (winner.equals(aiPlayer)) {
-                return 10 - depth; // AI wins
-            } else if (winner.equals(humanPlayer)) {
-                return depth - 10; // Human wins
-            } else {
-                return 0; // Tie
+     * Difficult AI: Uses Minimax with Alpha-Beta Pruning and randomization for equally optimal moves.
+     * The board is converted to bitboards once; the search itself works only on long masks.
+     * Reachable 3x3 positions are answered from the PerfectPlayTable without searching,
+     * positions on the tablebase's board from the tablebase, and positions in the opening
+     * book from the book.
+     * Otherwise the search deepens until the limits run out and plays the best move of the
+     * deepest finished iteration.
+     */
+    private static int getDifficultMove(String[][] board, BoardGeometry geometry, String aiPlayer, String humanPlayer,
+                                        SearchLimits limits, CancellationToken cancellation, RandomSource random,
+                                        SearchListener listener, long startNanos) {
+        long aiMask = geometry.fromBoard(board, aiPlayer);
+        long humanMask = geometry.fromBoard(board, humanPlayer);
+
+        if (perfectPlayTableEnabled && geometry == BoardGeometry.STANDARD) {
+            PerfectPlayTable table = PerfectPlayTable.getInstance();
+            int tableMoves = table.getBestMoves((int) aiMask, (int) humanMask);
+            if (tableMoves != 0) {
+                int cell = pickRandomCell(tableMoves, random);
+                if (listener != null) {
+                    listener.onSearchFinished(new SearchStats(Difficulty.DIFFICULT, false, 0, 0, 0, 0, -1,
+                            System.nanoTime() - startNanos, table.getValue((int) aiMask, (int) humanMask),
+                            tablePrincipalVariation(table, geometry, (int) aiMask, (int) humanMask, cell)));
+                }
+                return cell;
             }
         }
 
-        if (isBoardFull(board)) {
-            return 0; // Tie
-        }
-
-        if (isMaximizingPlayer) {
-            int maxEval = Integer.MIN_VALUE;
-            for (int r = 0; r < 3; r++) {
-                for (int c = 0; c < 3; c++) {
-                    if (board[r][c].isEmpty()) {
-                        board[r][c] = aiPlayer;
-                        int eval = minimax(board, depth + 1, false, aiPlayer, humanPlayer, alpha, beta);
-                        board[r][c] = ""; // Undo the move
-                        maxEval = Math.max(maxEval, eval);
-                        alpha = Math.max(alpha, eval);
-                        if (beta <= alpha) {
-                            break; // Beta cut-off
-                        }
-                    }
-                }
-                if (beta <= alpha) {
-                    break;
+        Tablebase tablebase = getTablebase();
+        if (tablebase != null && tablebase.getGeometry() == geometry) {
+            long tableMoves = tablebase.getBestMoves(aiMask, humanMask);
+            if (tableMoves != 0) {
+                int cell = pickRandomCell(tableMoves, random);
+                if (listener != null) {
+                    listener.onSearchFinished(new SearchStats(Difficulty.DIFFICULT, false, 0, 0, 0, 0, -1,
+                            System.nanoTime() - startNanos, tablebase.getScore(aiMask, humanMask),
+                            tablebasePrincipalVariation(tablebase, geometry, aiMask, humanMask, cell)));
                 }
+                return cell;
             }
-            return maxEval;
-        } else { // Minimizing player (human)
-            int minEval = Integer.MAX_VALUE;
-            for (int r = 0; r < 3; r++) {
-                for (int c = 0; c < 3; c++) {
-                    if (board[r][c].isEmpty()) {
-                        board[r][c] = humanPlayer;
-                        int eval = minimax(board, depth + 1, true, aiPlayer, humanPlayer, alpha, beta);
-                        board[r][c] = ""; // Undo the move
-                        minEval = Math.min(minEval, eval);
-                        beta = Math.min(beta, eval);
-                        if (beta <= alpha) {
-                            break; // Alpha cut-off
-                        }
-                    }
-                }
-                if (beta <= alpha) {
-                    break;
+        }
+
+        OpeningBook book = getOpeningBook();
+        if (book != null) {
+            int cell = book.pickMove(geometry, aiMask, humanMask, random);
+            if (cell >= 0) {
+                if (listener != null) {
+                    listener.onSearchFinished(new SearchStats(Difficulty.DIFFICULT, false, 0, 0, 0, 0, -1,
+                            System.nanoTime() - startNanos, 0, new int[][]{toMove(geometry, cell)}));
                 }
+                return cell;
             }
-            return minEval;
         }
+
+        SearchEngine engine = getSearchEngine();
+        long bestMoves = engine.search(geometry, aiMask, humanMask, limits, cancellation);
+
+        // Randomly select one of the best moves to make AI less predictable
+        int cell = NO_MOVE; // Should not happen in a solvable game like Tic Tac Toe
+        if (bestMoves != 0) {
+            cell = pickRandomCell(bestMoves, random);
+        }
+        if (listener != null) {
+            int[][] line = new int[0][];
+            if (cell != NO_MOVE) {
+                int[] cells = new int[Math.max(1, engine.getCompletedDepth())];
+                int length = engine.principalVariation(geometry, aiMask, humanMask, cell, cells);
+                line = toMoves(geometry, cells, length);
+            }
+            listener.onSearchFinished(new SearchStats(Difficulty.DIFFICULT, true, engine.getNodes(), engine.getCutoffs(),
+                    engine.getMaxDepthReached(), engine.getCompletedDepth(), engine.getTableHits(),
+                    System.nanoTime() - startNanos, engine.getBestScore(), line));
+        }
+        return cell;
     }
 
     /**
-     * Checks if the game has ended (win or tie).
-     * Returns the winner's symbol ("X" or "O"), "Tie" if it's a tie, or null if game is ongoing.
+     * Monte Carlo AI: grows a search tree with random playouts until the limits run out and plays
+     * the most visited move. Immediate wins and blocks are played without a search.
      */
-    private static String checkGameEnd(String[][] board) {
-        // Corrected logic: checkWinner returns boolean, use it in if condition
-        if (checkWinner(board, "X")) {
-            return "X";
+    private static int getMonteCarloMove(String[][] board, BoardGeometry geometry, String aiPlayer, String humanPlayer,
+                                         SearchLimits limits, CancellationToken cancellation, RandomSource random,
+                                         SearchListener listener, long startNanos) {
+        long aiMask = geometry.fromBoard(board, aiPlayer);
+        long humanMask = geometry.fromBoard(board, humanPlayer);
+        long forced = SearchEngine.completingCells(geometry, aiMask, humanMask);
+        if (forced == 0) {
+            forced = SearchEngine.completingCells(geometry, humanMask, aiMask);
+        }
+        if (forced != 0 && !geometry.isWin(aiMask) && !geometry.isWin(humanMask)) {
+            int cell = pickRandomCell(forced, random);
+            if (listener != null) {
+                listener.onSearchFinished(new SearchStats(Difficulty.MONTE_CARLO, false, 0, 0, 0, 0, -1,
+                        System.nanoTime() - startNanos, 0, new int[][]{toMove(geometry, cell)}));
+            }
+            return cell;
         }
-        if (checkWinner(board, "O")) {
-            return "O";
+
+        MctsEngine engine = getMctsEngine();
+        int cell = engine.search(geometry, aiMask, humanMask, limits, cancellation, random);
+        if (cell < 0) {
+            return NO_MOVE;
         }
-        if (isBoardFull(board)) {
-            return "Tie";
+        if (listener != null) {
+            int[] cells = new int[geometry.getCellCount()];
+            int length = engine.principalVariation(cells);
+            listener.onSearchFinished(new SearchStats(Difficulty.MONTE_CARLO, true, engine.getPlayouts(), 0,
+                    engine.getMaxDepthReached(), 0, -1, System.nanoTime() - startNanos, engine.getScore(),
+                    toMoves(geometry, cells, length)));
         }
-        return null; // Game is still ongoing
+        return cell;
     }
 
     /**
-     * Checks if the given player has won the game.
+     * Follows the perfect-play table from the chosen move to the end of the game.
      */
-    private static boolean checkWinner(String[][] board, String player) {
-        // Check rows
-        for (int r = 0; r < 3; r++) {
-            if (board[r][0].equals(player) && board[r][1].equals(player) && board[r][2].equals(player)) {
-                return true;
+    private static int[][] tablePrincipalVariation(PerfectPlayTable table, BoardGeometry geometry, int aiMask, int humanMask, int cell) {
+        int[] cells = new int[geometry.getCellCount()];
+        int length = 0;
+        int ownMask = aiMask;
+        int otherMask = humanMask;
+        while (true) {
+            cells[length++] = cell;
+            int moved = ownMask | 1 << cell;
+            ownMask = otherMask;
+            otherMask = moved;
+            int next = table.getBestMoves(ownMask, otherMask);
+            if (next == 0) {
+                break; // Game over
             }
+            cell = Integer.numberOfTrailingZeros(next);
         }
-        // Check columns
-        for (int c = 0; c < 3; c++) {
-            if (board[0][c].equals(player) && board[1][c].equals(player) && board[2][c].equals(player)) {
-                return true;
+        return toMoves(geometry, cells, length);
+    }
+
+    /**
+     * Follows the tablebase from the chosen move to the end of the game.
+     */
+    private static int[][] tablebasePrincipalVariation(Tablebase tablebase, BoardGeometry geometry, long aiMask, long humanMask, int cell) {
+        int[] cells = new int[geometry.getCellCount()];
+        int length = 0;
+        long ownMask = aiMask;
+        long otherMask = humanMask;
+        while (true) {
+            cells[length++] = cell;
+            long moved = ownMask | 1L << cell;
+            ownMask = otherMask;
+            otherMask = moved;
+            long next = tablebase.getBestMoves(ownMask, otherMask);
+            if (next == 0) {
+                break; // Game over
             }
+            cell = Long.numberOfTrailingZeros(next);
+        }
+        return toMoves(geometry, cells, length);
+    }
+
+    private static int[][] toMoves(BoardGeometry geometry, int[] cells, int length) {
+        int[][] moves = new int[length][];
+        for (int i = 0; i < length; i++) {
+            moves[i] = toMove(geometry, cells[i]);
         }
-        // Check diagonals
-        if (board[0][0].equals(player) && board[1][1].equals(player) && board[2][2].equals(player)) {
-            return true;
+        return moves;
+    }
+
+    /**
+     * Unpacks a cell into {row, column}, or null for NO_MOVE.
+     */
+    private static int[] toMove(BoardGeometry geometry, int cell) {
+        return cell == NO_MOVE ? null : new int[]{geometry.row(cell), geometry.column(cell)};
+    }
+
+    /**
+     * Returns the opening book, loading it on the first call after setOpeningBook.
+     */
+    private static OpeningBook getOpeningBook() {
+        OpeningBook book = openingBook;
+        if (book != null || openingBookLoader == null) {
+            return book;
         }
-        if (board[0][2].equals(player) && board[1][1].equals(player) && board[2][0].equals(player)) {
-            return true;
+        synchronized (AILogic.class) {
+            if (openingBook == null && openingBookLoader != null) {
+                try {
+                    openingBook = openingBookLoader.call();
+                } catch (Exception e) {
+                    openingBookLoader = null; // Do not retry on every move; play without a book
+                }
+            }
+            return openingBook;
         }
-        return false;
     }
 
     /**
-     * Checks if the board is full.
+     * Returns the tablebase, loading it on the first call after setTablebase.
      */
-    private static boolean isBoardFull(String[][] board) {
-        for (int r = 0; r < 3; r++) {
-            for (int c = 0; c < 3; c++) {
-                if (board[r][c].isEmpty()) {
-                    return false;
+    private static Tablebase getTablebase() {
+        Tablebase table = tablebase;
+        if (table != null || tablebaseLoader == null) {
+            return table;
+        }
+        synchronized (AILogic.class) {
+            if (tablebase == null && tablebaseLoader != null) {
+                try {
+                    tablebase = tablebaseLoader.call();
+                } catch (Exception e) {
+                    tablebaseLoader = null; // Do not retry on every move; play without a tablebase
                 }
             }
+            return tablebase;
         }
-        return true;
+    }
+
+    /**
+     * Returns this thread's engine, replacing it if the search parallelism changed since it was made.
+     */
+    private static SearchEngine getSearchEngine() {
+        SearchEngine engine = searchEngines.get();
+        int parallelism = searchParallelism;
+        if (engine.getParallelism() != parallelism) {
+            engine.shutdown();
+            engine = new SearchEngine(transpositionTable, parallelism);
+            searchEngines.set(engine);
+        }
+        return engine;
+    }
+
+    /**
+     * Returns this thread's Monte Carlo engine, replacing it if the search parallelism changed.
+     */
+    private static MctsEngine getMctsEngine() {
+        MctsEngine engine = mctsEngines.get();
+        int parallelism = searchParallelism;
+        if (engine.getParallelism() != parallelism) {
+            engine.shutdown();
+            engine = new MctsEngine(MctsEngine.DEFAULT_CAPACITY, parallelism);
+            mctsEngines.set(engine);
+        }
+        return engine;
+    }
+
+    /**
+     * Picks one cell at random from a mask of equally good moves.
+     */
+    private static int pickRandomCell(long movesMask, RandomSource random) {
+        return BoardGeometry.nthSetBit(movesMask, random.nextInt(Long.bitCount(movesMask)));
     }
 }
@@ -0,0 +1,54 @@
+package com.aquaa.tictactoe;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+/**
+ * The app's default SharedPreferences, loaded once per process.
+ *
+ * Reading the preferences file is disk I/O, so MainActivity starts it on a background thread
+ * with preload; by the time GameActivity reads its settings they are usually in memory.
+ */
+final class AppPreferences {
+
+    private static volatile SharedPreferences preferences;
+    private static boolean preloadStarted;
+
+    private AppPreferences() {
+    }
+
+    /**
+     * Starts loading the preferences on a background thread, unless that already happened.
+     */
+    static void preload(Context context) {
+        Context application = context.getApplicationContext();
+        synchronized (AppPreferences.class) {
+            if (preloadStarted || preferences != null) {
+                return;
+            }
+            preloadStarted = true;
+        }
+        Thread thread = new Thread(() -> get(application), "preferences-preload");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the preferences, waiting for them to load if they are not in memory yet.
+     */
+    static SharedPreferences get(Context context) {
+        SharedPreferences result = preferences;
+        if (result == null) {
+            synchronized (AppPreferences.class) {
+                if (preferences == null) {
+                    SharedPreferences loaded = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext());
+                    loaded.contains("ai_difficulty"); // Blocks until the file is read
+                    preferences = loaded;
+                }
+                result = preferences;
+            }
+        }
+        return result;
+    }
+}
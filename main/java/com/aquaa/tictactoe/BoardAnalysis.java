@@ -0,0 +1,139 @@
+package com.aquaa.tictactoe;
+
+/**
+ * The value of every move of one position, for hints and game review; see AILogic.analyze.
+ *
+ * Scores are for the player to move, like SearchStats.getScore: 1,000,000 minus the plies to
+ * the win for a forced win, the negative of that for a forced loss, and 0 for a draw or a
+ * heuristic estimate if the search did not reach the end of the game.
+ */
+public final class BoardAnalysis {
+
+    public enum Outcome {
+        WIN, DRAW, LOSS,
+        /** The search did not reach the end of the game, so the score is an estimate. */
+        UNKNOWN
+    }
+
+    private final BoardGeometry geometry;
+    private final long moves;
+    private final int[] scores;
+    private final boolean complete;
+    private final int completedDepth;
+    private final long nodes;
+    private final long wallTimeNanos;
+
+    BoardAnalysis(BoardGeometry geometry, long moves, int[] scores, boolean complete, int completedDepth,
+                  long nodes, long wallTimeNanos) {
+        this.geometry = geometry;
+        this.moves = moves;
+        this.scores = scores;
+        this.complete = complete;
+        this.completedDepth = completedDepth;
+        this.nodes = nodes;
+        this.wallTimeNanos = wallTimeNanos;
+    }
+
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Returns true if the cell is a move of the analysis, i.e. it is empty and the game is not
+     * over. Only these cells have a score.
+     */
+    public boolean isMove(int row, int column) {
+        return (moves & 1L << geometry.cell(row, column)) != 0;
+    }
+
+    /**
+     * Mask of the analyzed moves, bit row * columns + column.
+     */
+    public long getMoves() {
+        return moves;
+    }
+
+    /**
+     * Mask of the moves with the highest score.
+     */
+    public long getBestMoves() {
+        long best = 0;
+        int bestScore = Integer.MIN_VALUE;
+        for (long rest = moves; rest != 0; rest &= rest - 1) {
+            int cell = Long.numberOfTrailingZeros(rest);
+            if (scores[cell] > bestScore) {
+                bestScore = scores[cell];
+                best = 0;
+            }
+            if (scores[cell] == bestScore) {
+                best |= 1L << cell;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Score of the move for the player to move.
+     *
+     * @throws IllegalArgumentException If the cell is not a move of the analysis.
+     */
+    public int getScore(int row, int column) {
+        return scores[checkMove(row, column)];
+    }
+
+    public Outcome getOutcome(int row, int column) {
+        int score = scores[checkMove(row, column)];
+        if (score > SearchEngine.WIN_THRESHOLD) {
+            return Outcome.WIN;
+        } else if (score < -SearchEngine.WIN_THRESHOLD) {
+            return Outcome.LOSS;
+        }
+        return complete ? Outcome.DRAW : Outcome.UNKNOWN;
+    }
+
+    /**
+     * Number of plies, the move included, until the game ends with best play from both sides,
+     * or -1 if the outcome is unknown. The winner takes the quickest win and the loser holds out
+     * longest; a draw lasts until the board is full.
+     */
+    public int getDistance(int row, int column) {
+        int score = scores[checkMove(row, column)];
+        if (Math.abs(score) > SearchEngine.WIN_THRESHOLD) {
+            return SearchEngine.WIN_SCORE - Math.abs(score) + 1;
+        }
+        return complete ? Long.bitCount(moves) : -1;
+    }
+
+    /**
+     * Returns true if the search reached the end of the game on every line, so every outcome
+     * is known.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Depth of the last iteration that finished, which the scores are based on.
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Number of positions visited, over all search threads.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    private int checkMove(int row, int column) {
+        if (!isMove(row, column)) {
+            throw new IllegalArgumentException("Not a move of this analysis: " + row + "," + column);
+        }
+        return geometry.cell(row, column);
+    }
+}
@@ -0,0 +1,389 @@
+package com.aquaa.tictactoe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shape of an m,n,k board: the number of rows and columns and how many marks in a row win.
+ * All tables the engine needs are precomputed here once per geometry: the winning lines as
+ * bitboard masks, the lines through each cell and the symmetries of the board.
+ *
+ * Bitboards are long masks where bit (row * columns + col) is a cell, so boards of up to
+ * 64 cells are supported.
+ */
+public final class BoardGeometry {
+
+    public static final int MAX_CELLS = 64;
+
+    /** The classic 3x3 board with three in a row. */
+    public static final BoardGeometry STANDARD = new BoardGeometry(3, 3, 3);
+
+    // Geometries are immutable and their tables are costly to build, so each shape is built once
+    private static final Map<Integer, BoardGeometry> cache = new ConcurrentHashMap<>();
+
+    private final int rows;
+    private final int columns;
+    private final int winLength;
+    private final int cellCount;
+    private final long fullMask;
+    private final long keySalt;
+
+    private final long[] lineMasks;
+    private final int[][] lineCells;
+    private final int[][] linesThroughCell;
+
+    private final int[] centerCells;
+    private final int[] cornerCells;
+    private final int[] sideCells;
+
+    private final int symmetryCount;
+    private final int[][] symmetryCells;
+    private final int[][] inverseSymmetryCells;
+    // For each symmetry, the transform of every byte of a mask, so a transform is a few lookups
+    private final long[][][] symmetryChunks;
+
+    // Zobrist keys per player slot and cell; derived from the geometry, so hashes are the same on every run
+    private final long[][] zobristKeys;
+
+    private BoardGeometry(int rows, int columns, int winLength) {
+        this.rows = rows;
+        this.columns = columns;
+        this.winLength = winLength;
+        this.cellCount = rows * columns;
+        this.fullMask = cellCount == 64 ? -1L : (1L << cellCount) - 1;
+        this.keySalt = mix(((long) rows << 16 | (long) columns << 8 | winLength) * 0x9E3779B97F4A7C15L);
+
+        // Winning lines: every run of winLength cells horizontally, vertically and on both diagonals
+        List<int[]> lines = new ArrayList<>();
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int[] direction : directions) {
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < columns; c++) {
+                    int endRow = r + direction[0] * (winLength - 1);
+                    int endColumn = c + direction[1] * (winLength - 1);
+                    if (endRow < 0 || endRow >= rows || endColumn < 0 || endColumn >= columns) {
+                        continue;
+                    }
+                    int[] line = new int[winLength];
+                    for (int i = 0; i < winLength; i++) {
+                        line[i] = cell(r + direction[0] * i, c + direction[1] * i);
+                    }
+                    lines.add(line);
+                }
+            }
+        }
+        lineCells = lines.toArray(new int[0][]);
+        lineMasks = new long[lineCells.length];
+        int[] lineCountPerCell = new int[cellCount];
+        for (int i = 0; i < lineCells.length; i++) {
+            for (int cell : lineCells[i]) {
+                lineMasks[i] |= 1L << cell;
+                lineCountPerCell[cell]++;
+            }
+        }
+        linesThroughCell = new int[cellCount][];
+        for (int cell = 0; cell < cellCount; cell++) {
+            linesThroughCell[cell] = new int[lineCountPerCell[cell]];
+        }
+        int[] filled = new int[cellCount];
+        for (int i = 0; i < lineCells.length; i++) {
+            for (int cell : lineCells[i]) {
+                linesThroughCell[cell][filled[cell]++] = i;
+            }
+        }
+
+        // Preferred cells for the rule-based AI: the middle, the corners, then the middle of each side
+        int lastRow = rows - 1;
+        int lastColumn = columns - 1;
+        List<Integer> centers = new ArrayList<>();
+        for (int r = lastRow / 2; r <= rows / 2; r++) {
+            for (int c = lastColumn / 2; c <= columns / 2; c++) {
+                centers.add(cell(r, c));
+            }
+        }
+        centerCells = toArray(centers);
+        cornerCells = new int[]{cell(0, 0), cell(0, lastColumn), cell(lastRow, 0), cell(lastRow, lastColumn)};
+        sideCells = new int[]{cell(0, columns / 2), cell(rows / 2, 0), cell(rows / 2, lastColumn), cell(lastRow, columns / 2)};
+
+        // Symmetries: all 8 for a square board, otherwise only those that keep the shape
+        symmetryCount = rows == columns ? 8 : 4;
+        symmetryCells = new int[symmetryCount][cellCount];
+        inverseSymmetryCells = new int[symmetryCount][cellCount];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                int cell = cell(r, c);
+                symmetryCells[0][cell] = cell;                                   // Identity
+                symmetryCells[1][cell] = cell(lastRow - r, lastColumn - c);      // Rotate 180
+                symmetryCells[2][cell] = cell(r, lastColumn - c);                // Mirror left-right
+                symmetryCells[3][cell] = cell(lastRow - r, c);                   // Mirror top-bottom
+                if (symmetryCount == 8) {
+                    symmetryCells[4][cell] = cell(c, lastRow - r);               // Rotate 90
+                    symmetryCells[5][cell] = cell(lastColumn - c, r);            // Rotate 270
+                    symmetryCells[6][cell] = cell(c, r);                         // Main diagonal
+                    symmetryCells[7][cell] = cell(lastColumn - c, lastRow - r);  // Anti-diagonal
+                }
+            }
+        }
+        int chunkCount = (cellCount + 7) / 8;
+        symmetryChunks = new long[symmetryCount][chunkCount][256];
+        for (int s = 0; s < symmetryCount; s++) {
+            for (int cell = 0; cell < cellCount; cell++) {
+                inverseSymmetryCells[s][symmetryCells[s][cell]] = cell;
+            }
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                for (int bits = 0; bits < 256; bits++) {
+                    long transformed = 0;
+                    for (int i = 0; i < 8; i++) {
+                        int cell = chunk * 8 + i;
+                        if ((bits & (1 << i)) != 0 && cell < cellCount) {
+                            transformed |= 1L << symmetryCells[s][cell];
+                        }
+                    }
+                    symmetryChunks[s][chunk][bits] = transformed;
+                }
+            }
+        }
+
+        zobristKeys = new long[2][cellCount];
+        for (int side = 0; side < 2; side++) {
+            for (int cell = 0; cell < cellCount; cell++) {
+                zobristKeys[side][cell] = mix(keySalt + (side * MAX_CELLS + cell + 1) * 0x9E3779B97F4A7C15L);
+            }
+        }
+    }
+
+    /**
+     * Returns the geometry for the given board shape.
+     *
+     * @throws IllegalArgumentException If the board has more than 64 cells or no line of
+     *         winLength fits on it.
+     */
+    public static BoardGeometry of(int rows, int columns, int winLength) {
+        if (rows == 3 && columns == 3 && winLength == 3) {
+            return STANDARD;
+        }
+        if (rows < 1 || columns < 1 || rows * columns > MAX_CELLS) {
+            throw new IllegalArgumentException("Unsupported board size " + rows + "x" + columns);
+        }
+        if (winLength < 1 || winLength > Math.max(rows, columns)) {
+            throw new IllegalArgumentException("Win length " + winLength + " does not fit a " + rows + "x" + columns + " board");
+        }
+        return cache.computeIfAbsent(rows << 16 | columns << 8 | winLength,
+                key -> new BoardGeometry(rows, columns, winLength));
+    }
+
+    /**
+     * Returns the geometry for a board whose win length is not known: the standard game for
+     * 3x3 boards, otherwise a full row (of the shorter side) is needed to win.
+     */
+    public static BoardGeometry forBoard(String[][] board) {
+        int rows = board.length;
+        int columns = board[0].length;
+        return of(rows, columns, Math.min(rows, columns));
+    }
+
+    /**
+     * Parses a board spec like "3x3" or "7x7k5": rows x columns, then the win length after k.
+     * Without k the win length is as in forBoard.
+     *
+     * @throws IllegalArgumentException If the spec is malformed or the board is unsupported.
+     */
+    public static BoardGeometry parse(String spec) {
+        String[] parts = spec.trim().toLowerCase().split("[xk]");
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException("Board spec must look like 3x3 or 7x7k5, got " + spec);
+        }
+        try {
+            int rows = Integer.parseInt(parts[0]);
+            int columns = Integer.parseInt(parts[1]);
+            int winLength = parts.length > 2 ? Integer.parseInt(parts[2]) : Math.min(rows, columns);
+            return of(rows, columns, winLength);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Board spec must look like 3x3 or 7x7k5, got " + spec, e);
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    long getFullMask() {
+        return fullMask;
+    }
+
+    int getLineCount() {
+        return lineMasks.length;
+    }
+
+    long getLineMask(int line) {
+        return lineMasks[line];
+    }
+
+    int[] getLineCells(int line) {
+        return lineCells[line];
+    }
+
+    int[] getLinesThroughCell(int cell) {
+        return linesThroughCell[cell];
+    }
+
+    int[] getCenterCells() {
+        return centerCells;
+    }
+
+    int[] getCornerCells() {
+        return cornerCells;
+    }
+
+    int[] getSideCells() {
+        return sideCells;
+    }
+
+    public int getSymmetryCount() {
+        return symmetryCount;
+    }
+
+    int getSymmetryCell(int symmetry, int cell) {
+        return symmetryCells[symmetry][cell];
+    }
+
+    int getInverseSymmetryCell(int symmetry, int cell) {
+        return inverseSymmetryCells[symmetry][cell];
+    }
+
+    /**
+     * Returns the Zobrist key of a mark of the given player slot (0 or 1) on the cell.
+     */
+    long getZobristKey(int side, int cell) {
+        return zobristKeys[side][cell];
+    }
+
+    public int cell(int row, int column) {
+        return row * columns + column;
+    }
+
+    public int row(int cell) {
+        return cell / columns;
+    }
+
+    public int column(int cell) {
+        return cell % columns;
+    }
+
+    /**
+     * Checks if the given player mask covers any winning line.
+     */
+    boolean isWin(long mask) {
+        for (long line : lineMasks) {
+            if ((mask & line) == line) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies one of the board's symmetries to a mask.
+     */
+    long transform(long mask, int symmetry) {
+        long[][] chunks = symmetryChunks[symmetry];
+        long transformed = 0;
+        for (int chunk = 0; mask != 0; chunk++) {
+            transformed |= chunks[chunk][(int) (mask & 0xFF)];
+            mask >>>= 8;
+        }
+        return transformed;
+    }
+
+    /**
+     * Finds the symmetry that maps the position to its canonical form, the smallest
+     * (own, other) pair over all symmetries of the board.
+     */
+    int canonicalSymmetry(long ownMask, long otherMask) {
+        int best = 0;
+        long bestOwn = ownMask;
+        long bestOther = otherMask;
+        for (int s = 1; s < symmetryCount; s++) {
+            long own = transform(ownMask, s);
+            int order = Long.compareUnsigned(own, bestOwn);
+            if (order < 0) {
+                best = s;
+                bestOwn = own;
+                bestOther = transform(otherMask, s);
+            } else if (order == 0) {
+                long other = transform(otherMask, s);
+                if (Long.compareUnsigned(other, bestOther) < 0) {
+                    best = s;
+                    bestOther = other;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Hashes a position on this board into a 64-bit key. Different geometries give different
+     * keys for the same masks, so one table can hold positions of several board sizes.
+     */
+    long positionKey(long ownMask, long otherMask) {
+        return mix(ownMask * 0x9E3779B97F4A7C15L ^ mix(otherMask ^ keySalt));
+    }
+
+    /**
+     * Builds the mask of cells on the board that hold the given player's symbol.
+     */
+    long fromBoard(String[][] board, String player) {
+        long mask = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                if (board[r][c].equals(player)) {
+                    mask |= 1L << cell(r, c);
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the index of the n-th (zero based) set bit in the mask.
+     */
+    static int nthSetBit(long mask, int n) {
+        for (int i = 0; i < n; i++) {
+            mask &= mask - 1; // Clear the lowest set bit
+        }
+        return Long.numberOfTrailingZeros(mask);
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        return rows + "x" + columns + " (" + winLength + " in a row)";
+    }
+}
@@ -0,0 +1,22 @@
+package com.aquaa.tictactoe;
+
+/**
+ * Lets one thread ask a running AI search on another thread to stop.
+ * The search checks the token every few hundred positions, so it stops soon after cancel()
+ * and returns without a move.
+ */
+public final class CancellationToken {
+
+    // Passed when the caller has no way to cancel; nothing in the package cancels it
+    static final CancellationToken NONE = new CancellationToken();
+
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
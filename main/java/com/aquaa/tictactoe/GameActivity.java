@@ -3,15 +3,16 @@ package com.aquaa.tictactoe; // Remember to replace with your package name
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.ObjectAnimator;
+import android.content.Context;
 import android.content.SharedPreferences;
 import android.media.MediaPlayer;
 import android.media.SoundPool;
 import android.media.AudioManager; // This might be unused, but keeping it if you had it.
 import android.os.Bundle;
 import android.os.Handler;
-import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -19,10 +20,15 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AppCompatDelegate; // This might be unused if theme is handled elsewhere.
+import androidx.lifecycle.Lifecycle;
 
 import java.util.ArrayList; // This might be unused.
 import java.util.List; // This might be unused.
+import java.io.File;
+import java.io.IOException;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class GameActivity extends AppCompatActivity {
 
@@ -31,8 +37,14 @@ public class GameActivity extends AppCompatActivity {
     private TextView statusLabel;
     private TextView scoreLabel;
     private Button[][] buttons = new Button[3][3];
+    private static final int[][] BUTTON_IDS = {
+            {R.id.button_00, R.id.button_01, R.id.button_02},
+            {R.id.button_10, R.id.button_11, R.id.button_12},
+            {R.id.button_20, R.id.button_21, R.id.button_22}
+    };
     private Button newGameButton;
     private Button undoButton;
+    private Button redoButton;
     private Button resetScoresButton;
     // Removed: private ProgressBar aiThinkingIndicator; // Removed ProgressBar declaration
 
@@ -43,24 +55,48 @@ public class GameActivity extends AppCompatActivity {
     private String currentPlayer; // Current turn (X or O)
     private boolean isAITurn = false;
     private boolean gameEnded = false;
+    private boolean userStartedGame;
 
     // AI related
     private AILogic.Difficulty aiDifficulty;
+    private static final long AI_MIN_DISPLAY_MILLIS = 2000; // AI "thinks" at least this long, search included
     private Handler aiHandler = new Handler();
-
-    // Scores
-    private int userWins = 0;
-    private int aiWins = 0;
-    private int draws = 0;
-
-    // Sound
-    private SoundPool soundPool;
-    private int clickSoundId, winSoundId, tieSoundId;
+    private AIExecutor aiExecutor = new AIExecutor(aiHandler::post); // Moves are computed off the UI thread
+    private CancellationToken aiMoveToken; // Token of the AI move being computed, null if none
+    private boolean ponderEnabled; // Search the AI's replies while the user thinks
+    private static final String OPENING_BOOK_ASSET = "opening_book.bin";
+
+    // Game records, written on a background thread so file I/O stays off the UI thread
+    private static final String GAME_LOG_FILE = "games.log";
+    private final ExecutorService gameLogExecutor = Executors.newSingleThreadExecutor();
+    private GameLog gameLog; // Only used on gameLogExecutor
+
+    // Scores and other results, saved in batches on a background thread. One instance per
+    // process: a new activity, e.g. after a rotation, must not read the file before the old
+    // one's last write, so the instance outlives activities and is never closed
+    private static final String STATISTICS_FILE = "statistics.bin";
+    private static GameStatistics sharedStatistics;
+    private GameStatistics statistics;
+
+    // Sound, loaded on a background thread so it does not hold up the first frame
+    private static final int CLICK_SOUND = 0;
+    private static final int WIN_SOUND = 1;
+    private static final int TIE_SOUND = 2;
+    private static final int[] SOUND_RESOURCES = {R.raw.click, R.raw.win, R.raw.tie};
+    private final ExecutorService audioExecutor = Executors.newSingleThreadExecutor();
+    private SoundPool soundPool; // Null until loaded
+    private final int[] soundIds = new int[SOUND_RESOURCES.length];
+    private int soundsToLoad = SOUND_RESOURCES.length;
+    private int pendingSound = -1; // Sound requested before the sounds were loaded, -1 if none
     private MediaPlayer backgroundMusicPlayer;
     private boolean soundEnabled;
 
+    // Start-up timing, logged once the first frame is drawn and the sounds are ready
+    private StartupTimer startupTimer;
+
     // Preferences
     private SharedPreferences sharedPreferences;
+    // Only read once, to carry the scores over to the statistics file
     private static final String PREF_KEY_FIRST_TURN_USER = "first_turn_user";
     private static final String PREF_KEY_USER_WINS = "user_wins";
     private static final String PREF_KEY_AI_WINS = "ai_wins";
@@ -68,11 +104,14 @@ public class GameActivity extends AppCompatActivity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        startupTimer = new StartupTimer();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_game);
+        startupTimer.mark("layout");
 
-        // Initialize Shared Preferences
-        sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+        // Initialize Shared Preferences; MainActivity started loading them
+        sharedPreferences = AppPreferences.get(this);
+        startupTimer.mark("preferences");
 
         // Initialize UI elements
         turnLabel = findViewById(R.id.turn_label);
@@ -80,15 +119,14 @@ public class GameActivity extends AppCompatActivity {
         scoreLabel = findViewById(R.id.score_label);
         newGameButton = findViewById(R.id.new_game_button);
         undoButton = findViewById(R.id.undo_button);
+        redoButton = findViewById(R.id.redo_button);
         resetScoresButton = findViewById(R.id.reset_scores_button);
         // Removed: aiThinkingIndicator = findViewById(R.id.ai_thinking_indicator); // Removed ProgressBar initialization
 
         // Initialize game board buttons
         for (int r = 0; r < 3; r++) {
             for (int c = 0; c < 3; c++) {
-                String buttonID = "button_" + r + c;
-                int resID = getResources().getIdentifier(buttonID, "id", getPackageName());
-                buttons[r][c] = findViewById(resID);
+                buttons[r][c] = findViewById(BUTTON_IDS[r][c]);
                 final int finalR = r;
                 final int finalC = c;
                 buttons[r][c].setOnClickListener(v -> onCellClick(finalR, finalC));
@@ -98,19 +136,54 @@ public class GameActivity extends AppCompatActivity {
         // Set up button listeners
         newGameButton.setOnClickListener(v -> startNewGame());
         undoButton.setOnClickListener(v -> undoLastMove());
+        redoButton.setOnClickListener(v -> redoLastMove());
         resetScoresButton.setOnClickListener(v -> resetScores());
 
+        startupTimer.mark("views");
+
         // Load preferences (excluding theme setting here)
         loadSettings();
         loadScores();
+        startupTimer.mark("scores");
 
-        // Initialize sound
-        setupSoundPool();
-        loadSoundAssets();
-        playBackgroundMusic();
+        openGameLog();
+
+        // Read on the AI thread by the first move that needs it
+        AILogic.setOpeningBook(() -> OpeningBook.read(getApplicationContext().getAssets().open(OPENING_BOOK_ASSET)));
+
+        // Initialize sound in the background; the board is drawn meanwhile
+        loadAudio();
 
         // Start a new game
         startGame();
+        startupTimer.mark("board");
+
+        View root = getWindow().getDecorView();
+        root.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                root.getViewTreeObserver().removeOnPreDrawListener(this);
+                startupTimer.mark("first frame");
+                logStartup();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Logs the start-up timing once both the first frame and the sounds are ready.
+     */
+    private void logStartup() {
+        if (startupTimer.getNanos("first frame") >= 0 && startupTimer.getNanos("sounds") >= 0) {
+            Log.i("GameActivity", "Startup: " + startupTimer);
+        }
+    }
+
+    /**
+     * Returns the timing of this activity's start-up.
+     */
+    StartupTimer getStartupTimer() {
+        return startupTimer;
     }
 
     private void loadSettings() {
@@ -120,9 +193,15 @@ public class GameActivity extends AppCompatActivity {
             case "Easy":
                 aiDifficulty = AILogic.Difficulty.EASY;
                 break;
+            case "Advanced":
+                aiDifficulty = AILogic.Difficulty.ADVANCED;
+                break;
             case "Hard":
                 aiDifficulty = AILogic.Difficulty.DIFFICULT;
                 break;
+            case "Monte Carlo":
+                aiDifficulty = AILogic.Difficulty.MONTE_CARLO;
+                break;
             case "Medium":
             default:
                 aiDifficulty = AILogic.Difficulty.AVERAGE;
@@ -131,47 +210,98 @@ public class GameActivity extends AppCompatActivity {
 
         // Load sound enabled state
         soundEnabled = sharedPreferences.getBoolean("sound_enabled", true);
+
+        ponderEnabled = sharedPreferences.getBoolean("ponder_enabled", true);
     }
 
     private void loadScores() {
-        userWins = sharedPreferences.getInt(PREF_KEY_USER_WINS, 0);
-        aiWins = sharedPreferences.getInt(PREF_KEY_AI_WINS, 0);
-        draws = sharedPreferences.getInt(PREF_KEY_DRAWS, 0);
+        statistics = getStatistics(getApplicationContext(), sharedPreferences);
         updateScoreLabel();
     }
 
-    private void saveScores() {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putInt(PREF_KEY_USER_WINS, userWins);
-        editor.putInt(PREF_KEY_AI_WINS, aiWins);
-        editor.putInt(PREF_KEY_DRAWS, draws);
-        editor.apply();
+    /**
+     * Returns the process's statistics, opening the file on first use.
+     */
+    private static synchronized GameStatistics getStatistics(Context context, SharedPreferences preferences) {
+        if (sharedStatistics == null) {
+            GameStatistics opened = GameStatistics.open(new File(context.getFilesDir(), STATISTICS_FILE));
+            if (!opened.isLoaded() && preferences.contains(PREF_KEY_USER_WINS)) {
+                // First start with the statistics file: keep the scores saved in the preferences
+                opened.setTotals(preferences.getInt(PREF_KEY_USER_WINS, 0),
+                        preferences.getInt(PREF_KEY_AI_WINS, 0),
+                        preferences.getInt(PREF_KEY_DRAWS, 0));
+                opened.setUserFirstNext(preferences.getBoolean(PREF_KEY_FIRST_TURN_USER, true));
+            }
+            sharedStatistics = opened;
+        }
+        return sharedStatistics;
     }
 
     private void resetScores() {
-        userWins = 0;
-        aiWins = 0;
-        draws = 0;
-        saveScores();
+        statistics.reset();
         updateScoreLabel();
         Toast.makeText(this, "Scores reset!", Toast.LENGTH_SHORT).show();
     }
 
-    private void setupSoundPool() {
-        soundPool = new SoundPool.Builder()
-                .setMaxStreams(5)
-                .build();
+    /**
+     * Creates the SoundPool and the music player on a background thread and hands them to the
+     * UI thread. The SoundPool decodes the sounds on its own thread and reports each one to the
+     * UI thread, as the loading thread has no Looper.
+     */
+    private void loadAudio() {
+        audioExecutor.execute(() -> {
+            SoundPool pool = new SoundPool.Builder()
+                    .setMaxStreams(5)
+                    .build();
+            pool.setOnLoadCompleteListener((loadedPool, sampleId, status) -> onSoundLoaded());
+            int[] ids = new int[SOUND_RESOURCES.length];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = pool.load(this, SOUND_RESOURCES[i], 1);
+            }
+
+            MediaPlayer music = MediaPlayer.create(this, R.raw.song1);
+            if (music != null) {
+                music.setLooping(true);
+                music.setVolume(0.2f, 0.2f);
+            }
+            runOnUiThread(() -> onAudioCreated(pool, ids, music));
+        });
+    }
+
+    private void onAudioCreated(SoundPool pool, int[] ids, MediaPlayer music) {
+        if (isDestroyed()) {
+            pool.release();
+            if (music != null) {
+                music.release();
+            }
+            return;
+        }
+        soundPool = pool;
+        System.arraycopy(ids, 0, soundIds, 0, ids.length);
+        backgroundMusicPlayer = music;
+        if (getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.RESUMED)) {
+            playBackgroundMusic();
+        }
+        onSoundsReady();
     }
 
-    private void loadSoundAssets() {
-        clickSoundId = soundPool.load(this, R.raw.click, 1);
-        winSoundId = soundPool.load(this, R.raw.win, 1);
-        tieSoundId = soundPool.load(this, R.raw.tie, 1);
+    private void onSoundLoaded() {
+        soundsToLoad--;
+        onSoundsReady();
+    }
 
-        backgroundMusicPlayer = MediaPlayer.create(this, R.raw.song1);
-        if (backgroundMusicPlayer != null) {
-            backgroundMusicPlayer.setLooping(true);
-            backgroundMusicPlayer.setVolume(0.2f, 0.2f);
+    /**
+     * Plays the sound requested while loading once the SoundPool is set and every sound is decoded.
+     */
+    private void onSoundsReady() {
+        if (soundPool == null || soundsToLoad > 0) {
+            return;
+        }
+        startupTimer.mark("sounds");
+        logStartup();
+        if (pendingSound >= 0) {
+            playSound(pendingSound);
+            pendingSound = -1;
         }
     }
 
@@ -186,14 +316,24 @@ public class GameActivity extends AppCompatActivity {
         }
     }
 
-    private void playSound(int soundId) {
-        if (soundEnabled) {
-            soundPool.play(soundId, 1, 1, 0, 0, 1);
+    /**
+     * @param sound CLICK_SOUND, WIN_SOUND or TIE_SOUND.
+     */
+    private void playSound(int sound) {
+        if (!soundEnabled) {
+            return;
+        }
+        if (soundPool == null || soundsToLoad > 0) {
+            pendingSound = sound; // Played as soon as the sounds are ready
+            return;
         }
+        soundPool.play(soundIds[sound], 1, 1, 0, 0, 1);
     }
 
     private void startGame() {
-        boolean userStartsNext = sharedPreferences.getBoolean(PREF_KEY_FIRST_TURN_USER, true);
+        cancelAIMove(); // A move computed for the previous game must not land on the new board
+
+        boolean userStartsNext = statistics.isUserFirstNext();
 
         player1Symbol = "X";
         player2Symbol = "O";
@@ -204,7 +344,8 @@ public class GameActivity extends AppCompatActivity {
             currentPlayer = player2Symbol; // AI (O) starts
         }
 
-        sharedPreferences.edit().putBoolean(PREF_KEY_FIRST_TURN_USER, !userStartsNext).apply();
+        statistics.setUserFirstNext(!userStartsNext);
+        userStartedGame = userStartsNext;
 
         gameState = new GameState();
         resetBoardUI();
@@ -217,7 +358,9 @@ public class GameActivity extends AppCompatActivity {
             isAITurn = true;
             // Removed: aiThinkingIndicator.setVisibility(View.VISIBLE); // Show indicator
             disableAllButtons(); // Disable buttons while AI thinks
-            aiHandler.postDelayed(this::makeAIMove, 2000);
+            requestAIMove();
+        } else {
+            startPondering();
         }
     }
 
@@ -251,7 +394,8 @@ public class GameActivity extends AppCompatActivity {
     }
 
     private void updateScoreLabel() {
-        scoreLabel.setText(getString(R.string.scores, userWins, aiWins, draws));
+        scoreLabel.setText(getString(R.string.scores, statistics.getTotal(GameStatistics.USER_WIN),
+                statistics.getTotal(GameStatistics.AI_WIN), statistics.getTotal(GameStatistics.DRAW)));
     }
 
     private void onCellClick(int r, int c) {
@@ -259,22 +403,49 @@ public class GameActivity extends AppCompatActivity {
             return;
         }
 
-        playSound(clickSoundId);
+        playSound(CLICK_SOUND);
         makeMove(r, c);
 
         if (!gameEnded) {
             isAITurn = true;
             // Removed: aiThinkingIndicator.setVisibility(View.VISIBLE); // Show indicator when AI is about to move
             disableAllButtons(); // Disable buttons while AI thinks
-            aiHandler.postDelayed(this::makeAIMove, 2000);
+            requestAIMove();
         }
     }
 
-    private void makeMove(int r, int c) {
-        // Save current board state for undo before making a move
-        gameState.saveBoardState();
+    /**
+     * Starts computing the AI's move in the background; makeAIMove receives it on the UI thread.
+     */
+    private void requestAIMove() {
+        cancelAIMove();
+        aiMoveToken = aiExecutor.requestMove(gameState.getBoard(), gameState.getGeometry(), aiDifficulty,
+                player2Symbol, player1Symbol, AI_MIN_DISPLAY_MILLIS, this::makeAIMove);
+    }
 
-        // Update GameState and UI
+    /**
+     * Lets the AI search its replies to the user's likely moves while the user thinks.
+     * Pondering stops by itself when the AI move is requested.
+     */
+    private void startPondering() {
+        if (ponderEnabled && !gameEnded && !isAITurn) {
+            aiExecutor.startPondering(gameState.getBoard(), gameState.getGeometry(), aiDifficulty,
+                    player2Symbol, player1Symbol);
+        }
+    }
+
+    /**
+     * Stops the AI move being computed, if any, and drops its result.
+     */
+    private void cancelAIMove() {
+        if (aiMoveToken != null) {
+            aiMoveToken.cancel();
+            aiMoveToken = null;
+        }
+    }
+
+    private void makeMove(int r, int c) {
+        // Update GameState (which logs the move for undo) and UI
         gameState.makeMove(r, c, currentPlayer);
         buttons[r][c].setText(currentPlayer);
 
@@ -291,17 +462,16 @@ public class GameActivity extends AppCompatActivity {
         }
     }
 
-    private void makeAIMove() {
+    private void makeAIMove(int[] aiMove) {
         // Removed: aiThinkingIndicator.setVisibility(View.GONE); // Hide indicator when AI starts moving
+        aiMoveToken = null;
         if (gameEnded) {
             isAITurn = false;
             return;
         }
 
-        int[] aiMove = AILogic.getAIMove(gameState.getBoard(), aiDifficulty, player2Symbol, player1Symbol);
-
         if (aiMove != null && gameState.isCellEmpty(aiMove[0], aiMove[1])) {
-            playSound(clickSoundId);
+            playSound(CLICK_SOUND);
             makeMove(aiMove[0], aiMove[1]);
         } else {
             Toast.makeText(this, "AI tried an invalid move or no moves available!", Toast.LENGTH_SHORT).show();
@@ -312,6 +482,7 @@ public class GameActivity extends AppCompatActivity {
         isAITurn = false; // AI's turn is over
         if (!gameEnded) { // Re-enable buttons only if game is not over
             enableAllButtons();
+            startPondering();
         }
     }
 
@@ -320,24 +491,51 @@ public class GameActivity extends AppCompatActivity {
         disableAllButtons();
         // Removed: aiThinkingIndicator.setVisibility(View.GONE); // Hide indicator if game ends during AI turn
 
+        int result;
         if (winner != null) {
             // Reverted to original winner_found string resource
             statusLabel.setText(getString(R.string.winner_found, winner));
-            playSound(winSoundId);
-            if (winner.equals(player1Symbol)) {
-                userWins++;
-            } else {
-                aiWins++;
-            }
+            playSound(WIN_SOUND);
+            result = winner.equals(player1Symbol) ? GameStatistics.USER_WIN : GameStatistics.AI_WIN;
             Toast.makeText(this, "Game Over! " + winner + " wins!", Toast.LENGTH_LONG).show();
         } else {
             statusLabel.setText(R.string.game_tie);
-            playSound(tieSoundId);
-            draws++;
+            playSound(TIE_SOUND);
+            result = GameStatistics.DRAW;
             Toast.makeText(this, "Game Over! It's a tie!", Toast.LENGTH_LONG).show();
         }
-        saveScores();
+        statistics.recordGame(aiDifficulty, userStartedGame, gameState.getMoveCell(0), result);
         updateScoreLabel();
+        logGame();
+    }
+
+    private void openGameLog() {
+        File file = new File(getFilesDir(), GAME_LOG_FILE);
+        gameLogExecutor.execute(() -> {
+            try {
+                gameLog = GameLog.open(file);
+            } catch (IOException e) {
+                Log.e("GameActivity", "Cannot open the game log", e);
+            }
+        });
+    }
+
+    /**
+     * Appends the finished game to the game log. The record is encoded here, as undo may
+     * change the game before the background write runs.
+     */
+    private void logGame() {
+        byte[] record = GameLog.encode(gameState, aiDifficulty, userStartedGame, System.currentTimeMillis());
+        gameLogExecutor.execute(() -> {
+            if (gameLog == null) {
+                return; // Opening failed; the error is already logged
+            }
+            try {
+                gameLog.append(record);
+            } catch (IOException e) {
+                Log.e("GameActivity", "Cannot write to the game log", e);
+            }
+        });
     }
 
     private void disableAllButtons() {
@@ -365,60 +563,87 @@ public class GameActivity extends AppCompatActivity {
      * Undoes the last turn, typically both the human's move and the AI's response.
      */
     private void undoLastMove() {
-        // Stop any pending AI moves if undo is pressed during AI's delay
-        aiHandler.removeCallbacksAndMessages(null);
+        // Stop the AI move being computed if undo is pressed during AI's turn
+        cancelAIMove();
+        aiExecutor.stopPondering(); // Pondered the position being taken back
         isAITurn = false; // Ensure AI turn flag is reset
         // Removed: aiThinkingIndicator.setVisibility(View.GONE); // Hide thinking indicator on undo
 
-        // We need at least 2 states in history for a human-AI turn to undo (initial empty board + human's first move).
-        // If history size is 1, it's just the initial empty board, so no moves to undo.
-        if (gameState.getHistorySize() <= 1) {
+        if (gameState.getMoveCount() == 0) {
             Toast.makeText(this, "No more moves to undo!", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        // If the game had just ended, reset the game state and re-enable buttons
-        if (gameEnded) {
-            gameEnded = false;
-            // The board UI will be reset below after popping states.
-            // Ensure all buttons are re-enabled if they were disabled due to game end.
-            for (int r = 0; r < 3; r++) {
-                for (int c = 0; c < 3; c++) {
-                    buttons[r][c].setEnabled(true);
-                }
-            }
+        // Take back the AI's moves since the human's last move, then the human's move itself
+        while (player2Symbol.equals(gameState.getLastMovePlayer())) {
+            gameState.undoMove();
         }
+        gameState.undoMove();
 
-        // Pop two states: AI's move and then human's move
-        // Always try to undo the AI's last move (most recent)
-        gameState.restorePreviousBoardState(); // Pop AI's move
+        // Set the current player back to the human, as they should make the next move after an undo
+        currentPlayer = player1Symbol;
+        showBoardState();
+        updateTurnLabel();
+        statusLabel.setText(R.string.game_in_progress); // Always set status to in progress
+        gameEnded = false; // Ensure gameEnded is false
+        startPondering();
 
-        // Then, if there's another move (human's move) AND it's not just the initial empty board, pop it too.
-        if (gameState.getHistorySize() > 1) {
-            gameState.restorePreviousBoardState(); // Pop human's move
-        } else {
-            // This case happens if only the human's first move was present, and we just popped it.
-            // The board is now effectively empty, and history size is 1 (initial empty board).
+        Toast.makeText(this, "Last turn undone!", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Redoes the last undone turn: the human's move and the AI's response, if it was made.
+     */
+    private void redoLastMove() {
+        if (isAITurn || gameEnded || !player1Symbol.equals(gameState.getRedoMovePlayer())) {
+            Toast.makeText(this, "No moves to redo!", Toast.LENGTH_SHORT).show();
+            return;
         }
 
+        gameState.redoMove(); // Human's move
+        while (player2Symbol.equals(gameState.getRedoMovePlayer())) {
+            gameState.redoMove(); // AI's response
+        }
+        showBoardState();
 
-        // Update UI with the restored board state
-        String[][] restoredBoard = gameState.getCurrentBoardState();
-        for (int r = 0; r < 3; r++) {
-            for (int c = 0; c < 3; c++) {
-                buttons[r][c].setText(restoredBoard[r][c]);
-                buttons[r][c].setEnabled(true); // Re-enable all buttons to allow new moves
+        String winner = gameState.checkWinner();
+        if (winner != null || gameState.isBoardFull()) {
+            // The score was counted when the game first ended, so only show the result again
+            gameEnded = true;
+            disableAllButtons();
+            if (winner != null) {
+                statusLabel.setText(getString(R.string.winner_found, winner));
+            } else {
+                statusLabel.setText(R.string.game_tie);
             }
+            return;
         }
 
-        // Set the current player back to the human, as they should make the next move after an undo
-        currentPlayer = player1Symbol;
-        updateTurnLabel();
-        statusLabel.setText(R.string.game_in_progress); // Always set status to in progress
-        gameEnded = false; // Ensure gameEnded is false
-        enableAllButtons(); // Ensure all relevant buttons are enabled
+        if (player1Symbol.equals(gameState.getLastMovePlayer())) {
+            // The AI's response was never made, so let the AI move now
+            currentPlayer = player2Symbol;
+            updateTurnLabel();
+            isAITurn = true;
+            disableAllButtons();
+            requestAIMove();
+        } else {
+            currentPlayer = player1Symbol;
+            updateTurnLabel();
+            startPondering();
+        }
+    }
 
-        Toast.makeText(this, "Last turn undone!", Toast.LENGTH_SHORT).show();
+    /**
+     * Shows the GameState's board after undo or redo changed it, enabling only the empty cells.
+     */
+    private void showBoardState() {
+        String[][] currentBoard = gameState.getCurrentBoardState();
+        for (int r = 0; r < 3; r++) {
+            for (int c = 0; c < 3; c++) {
+                buttons[r][c].setText(currentBoard[r][c]);
+                buttons[r][c].setEnabled(currentBoard[r][c].isEmpty());
+            }
+        }
     }
 
 
@@ -428,6 +653,11 @@ public class GameActivity extends AppCompatActivity {
         loadSettings(); // Reload settings when activity resumes (e.g., after returning from settings)
         playBackgroundMusic(); // Resume background music if enabled
         updateScoreLabel(); // Ensure scores are up-to-date
+        if (isAITurn && !gameEnded && aiMoveToken == null) {
+            requestAIMove(); // The AI move was cancelled when the activity paused
+        } else {
+            startPondering(); // Stopped when the activity paused; the difficulty may have changed
+        }
     }
 
     @Override
@@ -436,7 +666,9 @@ public class GameActivity extends AppCompatActivity {
         if (backgroundMusicPlayer != null && backgroundMusicPlayer.isPlaying()) {
             backgroundMusicPlayer.pause(); // Pause background music when activity is not in foreground
         }
-        aiHandler.removeCallbacksAndMessages(null); // Stop any pending AI moves
+        cancelAIMove(); // Stop the AI search; it starts again in onResume
+        aiExecutor.stopPondering(); // No background work while the user is away
+        statistics.flush(); // The process may be killed once paused
         // Removed: aiThinkingIndicator.setVisibility(View.GONE); // Hide indicator if activity pauses
     }
 
@@ -451,6 +683,20 @@ public class GameActivity extends AppCompatActivity {
             soundPool.release(); // Release SoundPool resources
             soundPool = null;
         }
+        audioExecutor.shutdown(); // Audio still loading is released when it arrives
+        cancelAIMove();
+        aiExecutor.shutdown(); // Stop the AI worker thread
         aiHandler.removeCallbacksAndMessages(null); // Ensure all AI handler messages are removed
+        gameLogExecutor.execute(() -> {
+            try {
+                if (gameLog != null) {
+                    gameLog.close();
+                }
+            } catch (IOException e) {
+                Log.e("GameActivity", "Cannot close the game log", e);
+            }
+        });
+        gameLogExecutor.shutdown(); // Runs the pending writes, then stops
+        statistics.flush(); // Shared with the next activity, so not closed
     }
 }
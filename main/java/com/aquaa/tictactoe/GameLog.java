@@ -0,0 +1,253 @@
+package com.aquaa.tictactoe;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Append-only file of finished games, about one byte per move.
+ *
+ * Each record is a fixed header followed by the moves:
+ * <pre>
+ *   byte  flags      difficulty (bits 0-1, high bit 6), user moved first (bit 2),
+ *                    O moved first (bit 3), result (bits 4-5: 0 unfinished, 1 X won, 2 O won, 3 draw)
+ *   long  timestamp  milliseconds since the epoch
+ *   byte  rows, columns, win length
+ *   byte  move count
+ *   byte  cell of each move (row * columns + column), players alternating
+ * </pre>
+ * Reading goes through a memory-mapped view of the file. Opening the log walks the headers
+ * once to index the records, so any game, and any ply of it, is then read directly without
+ * touching the other records. A record cut short by a crash is dropped when the log is opened.
+ *
+ * A GameLog is not thread-safe; GameActivity uses it from a single background thread.
+ */
+public final class GameLog implements Closeable {
+
+    public static final int RESULT_UNFINISHED = 0;
+    public static final int RESULT_X_WON = 1;
+    public static final int RESULT_O_WON = 2;
+    public static final int RESULT_DRAW = 3;
+
+    // Record layout, see the class comment
+    private static final int FLAGS_OFFSET = 0;
+    private static final int TIMESTAMP_OFFSET = 1;
+    private static final int ROWS_OFFSET = 9;
+    private static final int COLUMNS_OFFSET = 10;
+    private static final int WIN_LENGTH_OFFSET = 11;
+    private static final int MOVE_COUNT_OFFSET = 12;
+    private static final int HEADER_BYTES = 13;
+    private static final int USER_FIRST_FLAG = 1 << 2;
+    private static final int O_FIRST_FLAG = 1 << 3;
+    private static final int RESULT_SHIFT = 4;
+    // Difficulties past the first four need a third bit, placed where older records have 0
+    private static final int DIFFICULTY_HIGH_SHIFT = 4;
+
+    private final FileChannel channel;
+    // Offset of every record; only the first gameCount entries are used
+    private long[] offsets = new long[1024];
+    private int gameCount;
+    private long size;
+    private MappedByteBuffer mapped;
+
+    private GameLog(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens the log, creating the file if needed, and indexes the games in it.
+     */
+    public static GameLog open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        GameLog log = new GameLog(channel);
+        try {
+            log.index();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return log;
+    }
+
+    /**
+     * Encodes a game as a record. Done on the thread that owns the game, so the record can be
+     * appended on another thread while the game goes on changing.
+     *
+     * @param userFirst True if the user made the first move.
+     */
+    public static byte[] encode(GameState game, AILogic.Difficulty difficulty, boolean userFirst, long timestampMillis) {
+        BoardGeometry geometry = game.getGeometry();
+        int moveCount = game.getMoveCount();
+        String winner = game.checkWinner();
+        int result = RESULT_UNFINISHED;
+        if (winner != null) {
+            result = winner.equals("O") ? RESULT_O_WON : RESULT_X_WON;
+        } else if (game.isBoardFull()) {
+            result = RESULT_DRAW;
+        }
+        int flags = (difficulty.ordinal() & 3) | (difficulty.ordinal() & 4) << DIFFICULTY_HIGH_SHIFT
+                | result << RESULT_SHIFT;
+        if (userFirst) {
+            flags |= USER_FIRST_FLAG;
+        }
+        if ("O".equals(game.getFirstPlayer())) {
+            flags |= O_FIRST_FLAG;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + moveCount);
+        record.put((byte) flags);
+        record.putLong(timestampMillis);
+        record.put((byte) geometry.getRows());
+        record.put((byte) geometry.getColumns());
+        record.put((byte) geometry.getWinLength());
+        record.put((byte) moveCount);
+        for (int ply = 0; ply < moveCount; ply++) {
+            record.put((byte) game.getMoveCell(ply));
+        }
+        return record.array();
+    }
+
+    /**
+     * Appends a record made by encode at the end of the file.
+     */
+    public void append(byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        long offset = size;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+        addOffset(size);
+        size = offset;
+    }
+
+    public int getGameCount() {
+        return gameCount;
+    }
+
+    public AILogic.Difficulty getDifficulty(int game) {
+        int flags = flags(game);
+        return AILogic.Difficulty.values()[(flags & 3) | (flags >>> DIFFICULTY_HIGH_SHIFT & 4)];
+    }
+
+    public boolean isUserFirst(int game) {
+        return (flags(game) & USER_FIRST_FLAG) != 0;
+    }
+
+    /**
+     * Returns one of the RESULT_ constants.
+     */
+    public int getResult(int game) {
+        return flags(game) >>> RESULT_SHIFT & 3;
+    }
+
+    public long getTimestamp(int game) {
+        return view(game).getLong(offset(game) + TIMESTAMP_OFFSET);
+    }
+
+    public int getMoveCount(int game) {
+        return view(game).get(offset(game) + MOVE_COUNT_OFFSET) & 0xFF;
+    }
+
+    /**
+     * Rebuilds a stored game with the given number of moves on the board. The later moves stay
+     * in the game's history, so redoMove steps forward through the rest of the game.
+     *
+     * @param ply From 0 (empty board) to getMoveCount(game).
+     */
+    public GameState replay(int game, int ply) {
+        MappedByteBuffer view = view(game);
+        int offset = offset(game);
+        int flags = view.get(offset + FLAGS_OFFSET);
+        BoardGeometry geometry = BoardGeometry.of(view.get(offset + ROWS_OFFSET), view.get(offset + COLUMNS_OFFSET),
+                view.get(offset + WIN_LENGTH_OFFSET));
+        int moveCount = view.get(offset + MOVE_COUNT_OFFSET) & 0xFF;
+        if (ply < 0 || ply > moveCount) {
+            throw new IllegalArgumentException("Ply " + ply + " is outside game " + game + " of " + moveCount + " moves");
+        }
+
+        GameState state = new GameState(geometry);
+        String player = (flags & O_FIRST_FLAG) != 0 ? "O" : "X";
+        for (int i = 0; i < moveCount; i++) {
+            int cell = view.get(offset + HEADER_BYTES + i);
+            state.makeMove(geometry.row(cell), geometry.column(cell), player);
+            player = player.equals("X") ? "O" : "X";
+        }
+        state.jumpToPly(ply);
+        return state;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mapped = null;
+        channel.close();
+    }
+
+    /**
+     * Walks the record headers from the start of the file. A record that does not fit in the
+     * file, or has an impossible header, ends the log; the file is cut back to the last good
+     * record so new games are appended after it.
+     */
+    private void index() throws IOException {
+        long fileSize = channel.size();
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        int offset = 0;
+        while (offset + HEADER_BYTES <= fileSize) {
+            int rows = mapped.get(offset + ROWS_OFFSET);
+            int columns = mapped.get(offset + COLUMNS_OFFSET);
+            int winLength = mapped.get(offset + WIN_LENGTH_OFFSET);
+            int moveCount = mapped.get(offset + MOVE_COUNT_OFFSET) & 0xFF;
+            if (rows < 1 || columns < 1 || rows * columns > BoardGeometry.MAX_CELLS || winLength < 1
+                    || winLength > Math.max(rows, columns) || moveCount > rows * columns || offset + HEADER_BYTES + moveCount > fileSize) {
+                break;
+            }
+            addOffset(offset);
+            offset += HEADER_BYTES + moveCount;
+        }
+        size = offset;
+        if (size < fileSize) {
+            channel.truncate(size);
+            // The mapping must end with the last good record, so appended games are mapped again
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private void addOffset(long offset) {
+        if (gameCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, gameCount * 2);
+        }
+        offsets[gameCount++] = offset;
+    }
+
+    private int flags(int game) {
+        return view(game).get(offset(game) + FLAGS_OFFSET);
+    }
+
+    // Mapped views are indexed by int, which limits the log to 2 GB, far beyond any game history
+    private int offset(int game) {
+        return (int) offsets[game];
+    }
+
+    /**
+     * Returns a mapped view covering the game, mapping the file again if the game was appended
+     * after the last mapping.
+     */
+    private MappedByteBuffer view(int game) {
+        if (game < 0 || game >= gameCount) {
+            throw new IndexOutOfBoundsException("Game " + game + " of " + gameCount);
+        }
+        if (offsets[game] >= mapped.capacity()) {
+            try {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot map the game log", e);
+            }
+        }
+        return mapped;
+    }
+}
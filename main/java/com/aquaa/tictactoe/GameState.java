@@ -1,21 +1,50 @@
 package com.aquaa.tictactoe; // Updated package name
 
-import java.util.Stack;
-
 public class GameState {
-    private String[][] board;
-    private Stack<String[][]> historyStack; // To store previous board states for undo
+    private final BoardGeometry geometry;
+    private final String[][] board;
+
+    // Move history: one packed int per move (cell, then player slot in the bits above CELL_BITS).
+    // Entries from moveCount to logSize are undone moves that redoMove can play again.
+    private static final int CELL_BITS = 7;
+    private static final int CELL_MASK = (1 << CELL_BITS) - 1;
+    private final int[] moveLog;
+    private int logSize;
+
+    // Incremental win detection: how many marks each player has on every line, and in total
+    private final String[] players = new String[2]; // Symbols in order of first appearance in this game
+    private final int[][] lineCounts;
+    private int moveCount;
+    private String winner;
+    private int winnerMoveCount; // Number of moves on the board when the winner completed a line
+
+    // Zobrist hash of the board under every symmetry of the geometry; index 0 is the board as is
+    private final long[] hashes;
 
     public GameState() {
-        board = new String[3][3];
+        this(BoardGeometry.STANDARD);
+    }
+
+    /**
+     * Creates a game on a board of the given size and win length.
+     */
+    public GameState(BoardGeometry geometry) {
+        this.geometry = geometry;
+        board = new String[geometry.getRows()][geometry.getColumns()];
+        lineCounts = new int[2][geometry.getLineCount()];
+        hashes = new long[geometry.getSymmetryCount()];
+        // A game never has more moves than cells, so the log never grows
+        moveLog = new int[geometry.getCellCount()];
         initializeBoard();
-        historyStack = new Stack<>();
-        saveBoardState(); // Save initial empty board state
+    }
+
+    public BoardGeometry getGeometry() {
+        return geometry;
     }
 
     private void initializeBoard() {
-        for (int r = 0; r < 3; r++) {
-            for (int c = 0; c < 3; c++) {
+        for (int r = 0; r < geometry.getRows(); r++) {
+            for (int c = 0; c < geometry.getColumns(); c++) {
                 board[r][c] = ""; // Empty string for empty cells
             }
         }
@@ -25,9 +54,9 @@ public class GameState {
      * Returns a deep copy of the current board state.
      */
     public String[][] getBoard() {
-        String[][] currentBoard = new String[3][3];
-        for (int r = 0; r < 3; r++) {
-            for (int c = 0; c < 3; c++) {
+        String[][] currentBoard = new String[geometry.getRows()][geometry.getColumns()];
+        for (int r = 0; r < geometry.getRows(); r++) {
+            for (int c = 0; c < geometry.getColumns(); c++) {
                 currentBoard[r][c] = board[r][c];
             }
         }
@@ -36,7 +65,8 @@ public class GameState {
 
     /**
      * Gets the current board state without creating a new copy.
-     * Useful when modifying the board directly, e.g., in Minimax.
+     * The board is read-only: changes must go through makeMove and undoMove, which keep the
+     * move history and win counters in step with it.
      */
     public String[][] getCurrentBoardState() {
         return board;
@@ -58,9 +88,17 @@ public class GameState {
      * @return True if the move was valid and made, false otherwise.
      */
     public boolean makeMove(int row, int col, String player) {
-        if (row >= 0 && row < 3 && col >= 0 && col < 3 && board[row][col].isEmpty()) {
-            board[row][col] = player;
-            // No need to save to history here, GameActivity will call saveBoardState() before makeMove()
+        if (row >= 0 && row < geometry.getRows() && col >= 0 && col < geometry.getColumns() && board[row][col].isEmpty()) {
+            int cell = geometry.cell(row, col);
+            if (moveCount == 0) {
+                // A new game, maybe after undoing the old one: the slots follow its first mover
+                players[0] = null;
+                players[1] = null;
+            }
+            int move = cell | playerIndex(player, true) << CELL_BITS;
+            moveLog[moveCount] = move;
+            logSize = moveCount + 1; // A new move replaces the moves that could have been redone
+            applyMove(move);
             return true;
         }
         return false;
@@ -68,80 +106,214 @@ public class GameState {
 
     /**
      * Checks for a winner on the current board.
+     * The winner is found when the winning move is made, so this does not scan the board.
      *
      * @return The symbol of the winning player ("X" or "O"), or null if no winner.
      */
     public String checkWinner() {
-        // Check rows
-        for (int r = 0; r < 3; r++) {
-            if (!board[r][0].isEmpty() && board[r][0].equals(board[r][1]) && board[r][1].equals(board[r][2])) {
-                return board[r][0];
+        return winner;
+    }
+
+    /**
+     * Checks if the board is full (a tie).
+     */
+    public boolean isBoardFull() {
+        return moveCount == geometry.getCellCount();
+    }
+
+    /**
+     * Checks if the player would complete a line by moving on the given empty cell.
+     * Only the lines through that cell are looked at.
+     */
+    public boolean isWinningMove(int row, int col, String player) {
+        int index = playerIndex(player, false);
+        int[] own = lineCounts[index];
+        int[] other = lineCounts[1 - index];
+        for (int line : geometry.getLinesThroughCell(geometry.cell(row, col))) {
+            if (own[line] == geometry.getWinLength() - 1 && other[line] == 0) {
+                return true;
             }
         }
-        // Check columns
-        for (int c = 0; c < 3; c++) {
-            if (!board[0][c].isEmpty() && board[0][c].equals(board[1][c]) && board[1][c].equals(board[2][c])) {
-                return board[0][c];
-            }
+        return false;
+    }
+
+    /**
+     * Takes back the last move.
+     *
+     * @return False if there is no move to take back.
+     */
+    public boolean undoMove() {
+        if (moveCount == 0) {
+            return false;
         }
-        // Check diagonals
-        if (!board[0][0].isEmpty() && board[0][0].equals(board[1][1]) && board[1][1].equals(board[2][2])) {
-            return board[0][0];
+        int move = moveLog[--moveCount];
+        int cell = move & CELL_MASK;
+        board[geometry.row(cell)][geometry.column(cell)] = "";
+        int[] counts = lineCounts[move >>> CELL_BITS];
+        for (int line : geometry.getLinesThroughCell(cell)) {
+            counts[line]--;
         }
-        if (!board[0][2].isEmpty() && board[0][2].equals(board[1][1]) && board[1][1].equals(board[2][0])) {
-            return board[0][2];
+        toggleHashes(move >>> CELL_BITS, cell);
+        if (moveCount < winnerMoveCount) {
+            winner = null; // No line was complete before the winning move
+            winnerMoveCount = 0;
         }
-        return null;
+        return true;
     }
 
     /**
-     * Checks if the board is full (a tie).
+     * Plays the last undone move again.
+     *
+     * @return False if there is no undone move, or a new move has been made since the undo.
      */
-    public boolean isBoardFull() {
-        for (int r = 0; r < 3; r++) {
-            for (int c = 0; c < 3; c++) {
-                if (board[r][c].isEmpty()) {
-                    return false;
-                }
-            }
+    public boolean redoMove() {
+        if (moveCount == logSize) {
+            return false;
         }
+        applyMove(moveLog[moveCount]);
         return true;
     }
 
     /**
-     * Saves a deep copy of the current board state to the history stack.
+     * Undoes or redoes moves until the given number of moves is on the board.
+     *
+     * @param ply From 0 (empty board) to getHistorySize().
+     */
+    public void jumpToPly(int ply) {
+        if (ply < 0 || ply > logSize) {
+            throw new IllegalArgumentException("Ply " + ply + " is outside the history of " + logSize + " moves");
+        }
+        while (moveCount > ply) {
+            undoMove();
+        }
+        while (moveCount < ply) {
+            redoMove();
+        }
+    }
+
+    /**
+     * Returns the number of moves on the board.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns the cell (row * columns + column) of a move on the board.
+     *
+     * @param ply From 0 (the first move) to getMoveCount() - 1.
+     */
+    public int getMoveCell(int ply) {
+        if (ply < 0 || ply >= moveCount) {
+            throw new IndexOutOfBoundsException("Move " + ply + " of " + moveCount);
+        }
+        return moveLog[ply] & CELL_MASK;
+    }
+
+    /**
+     * Returns the symbol of the player who made the first move, or null if no move was made.
+     */
+    public String getFirstPlayer() {
+        return logSize == 0 ? null : players[moveLog[0] >>> CELL_BITS];
+    }
+
+    /**
+     * Returns the symbol of the player who made the last move on the board, or null if it is empty.
+     */
+    public String getLastMovePlayer() {
+        return moveCount == 0 ? null : players[moveLog[moveCount - 1] >>> CELL_BITS];
+    }
+
+    /**
+     * Returns the symbol of the player who made the move redoMove would play, or null if there is none.
      */
-    public void saveBoardState() {
-        String[][] currentCopy = new String[3][3];
-        for (int r = 0; r < 3; r++) {
-            for (int c = 0; c < 3; c++) {
-                currentCopy[r][c] = board[r][c];
+    public String getRedoMovePlayer() {
+        return moveCount == logSize ? null : players[moveLog[moveCount] >>> CELL_BITS];
+    }
+
+    /**
+     * Returns the 64-bit Zobrist hash of the board: a key per cell and player, XORed together.
+     * It is kept up to date by every move, undo and redo, so reading it costs nothing.
+     * Players are told apart by who moved first in this game, not by their symbols, and the
+     * player to move is not part of the hash.
+     */
+    public long hash() {
+        return hashes[0];
+    }
+
+    /**
+     * Returns the hash of the board as transformed by one of its symmetries.
+     *
+     * @param symmetry From 0 (the board as is) to the geometry's symmetry count - 1.
+     */
+    public long hash(int symmetry) {
+        return hashes[symmetry];
+    }
+
+    /**
+     * Returns the same hash for all rotations and mirror images of the board, e.g. to key a
+     * cache of positions up to symmetry. The transposition table and the opening book do not
+     * use it; they key positions by BoardGeometry.positionKey, which is a different value.
+     */
+    public long canonicalHash() {
+        long min = hashes[0];
+        for (int s = 1; s < hashes.length; s++) {
+            min = Math.min(min, hashes[s]);
+        }
+        return min;
+    }
+
+    /**
+     * Adds or removes a mark in the hash of every symmetry; XOR makes both the same operation.
+     */
+    private void toggleHashes(int side, int cell) {
+        for (int s = 0; s < hashes.length; s++) {
+            hashes[s] ^= geometry.getZobristKey(side, geometry.getSymmetryCell(s, cell));
+        }
+    }
+
+    /**
+     * Places a logged move and updates the line counters; only the lines through its cell can
+     * have been completed.
+     */
+    private void applyMove(int move) {
+        int cell = move & CELL_MASK;
+        String player = players[move >>> CELL_BITS];
+        board[geometry.row(cell)][geometry.column(cell)] = player;
+        int[] counts = lineCounts[move >>> CELL_BITS];
+        toggleHashes(move >>> CELL_BITS, cell);
+        moveCount++;
+        for (int line : geometry.getLinesThroughCell(cell)) {
+            if (++counts[line] == geometry.getWinLength() && winner == null) {
+                winner = player;
+                winnerMoveCount = moveCount;
             }
         }
-        historyStack.push(currentCopy);
     }
 
     /**
-     * Restores the board to the previous state from the history stack.
-     * Does not pop the current state; pops the state *before* the current one.
-     * This makes "undo" effectively go back two states for AI turns (user then AI).
+     * Returns the counter slot of the player's symbol. A symbol that has not moved yet gets the
+     * first free slot; only a move (assign) claims it, so queries cannot decide the order.
      */
-    public void restorePreviousBoardState() {
-        if (historyStack.size() > 1) { // Need at least two states to restore to a previous one
-            historyStack.pop(); // Pop the current state
-            this.board = historyStack.peek(); // The actual previous state becomes current
-        } else if (historyStack.size() == 1) {
-            // If only initial empty board is left, clear it and re-initialize
-            historyStack.pop();
-            initializeBoard();
-            saveBoardState(); // Add the empty board back
+    private int playerIndex(String player, boolean assign) {
+        for (int i = 0; i < players.length; i++) {
+            if (players[i] == null) {
+                if (assign) {
+                    players[i] = player;
+                }
+                return i;
+            }
+            if (players[i].equals(player)) {
+                return i;
+            }
         }
+        throw new IllegalArgumentException("A game has two players, got a third symbol " + player);
     }
 
     /**
-     * Returns the current size of the history stack.
+     * Returns the number of moves in the history, including undone moves that can be redone.
      */
     public int getHistorySize() {
-        return historyStack.size();
+        return logSize;
     }
 }
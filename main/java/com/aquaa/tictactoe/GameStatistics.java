@@ -0,0 +1,294 @@
+package com.aquaa.tictactoe;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Game results, kept in memory and written to a file behind the game's back.
+ *
+ * Every update only changes counters in memory and schedules a write a little later, so a
+ * burst of updates costs one write. Writes run on a background thread and replace the file
+ * atomically: the data goes to a temporary file that is synced and then renamed over the old
+ * one, so a crash leaves either the old or the new statistics, never a mix.
+ *
+ * Besides the overall score, results are counted per difficulty, per first player and per
+ * opening move. All methods are thread-safe.
+ */
+public final class GameStatistics {
+
+    public static final int USER_WIN = 0;
+    public static final int AI_WIN = 1;
+    public static final int DRAW = 2;
+
+    // Updates within this time of each other are written together
+    private static final long WRITE_DELAY_MILLIS = 2000;
+
+    private static final int MAGIC = 0x54545453; // "TTTS"
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final ScheduledExecutorService writer;
+
+    private final long[] totals = new long[3];
+    private final long[][] byDifficulty = new long[AILogic.Difficulty.values().length][3];
+    private final long[][] byFirstPlayer = new long[2][3]; // 0: user moved first, 1: AI moved first
+    private final long[][] byOpening = new long[BoardGeometry.MAX_CELLS][3];
+    private boolean userFirstNext = true;
+
+    private boolean loaded;
+    private boolean dirty;
+    private boolean writeScheduled;
+
+    private GameStatistics(File file) {
+        this.file = file;
+        this.writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "statistics-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads the statistics from the file. A missing or unreadable file gives empty statistics;
+     * isLoaded tells the two cases apart.
+     *
+     * Open a file once per process and share the instance: writes are queued on the instance's
+     * own thread, so a second instance could read the file before the first has written it,
+     * and would then overwrite the missing results.
+     */
+    public static GameStatistics open(File file) {
+        GameStatistics statistics = new GameStatistics(file);
+        if (file.exists()) {
+            try {
+                statistics.read();
+                statistics.loaded = true;
+            } catch (IOException e) {
+                statistics.clearCounters(); // Start over rather than keep half-read counters
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns true if the statistics were read from an existing file.
+     */
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Counts a finished game.
+     *
+     * @param userFirst True if the user made the first move.
+     * @param openingCell Cell of the game's first move.
+     * @param result USER_WIN, AI_WIN or DRAW.
+     */
+    public synchronized void recordGame(AILogic.Difficulty difficulty, boolean userFirst, int openingCell, int result) {
+        totals[result]++;
+        byDifficulty[difficulty.ordinal()][result]++;
+        byFirstPlayer[userFirst ? 0 : 1][result]++;
+        byOpening[openingCell][result]++;
+        changed();
+    }
+
+    /**
+     * Sets the overall score, e.g. when taking over counters kept elsewhere before.
+     */
+    public synchronized void setTotals(long userWins, long aiWins, long draws) {
+        totals[USER_WIN] = userWins;
+        totals[AI_WIN] = aiWins;
+        totals[DRAW] = draws;
+        changed();
+    }
+
+    /**
+     * Clears every counter.
+     */
+    public synchronized void reset() {
+        clearCounters();
+        changed();
+    }
+
+    public synchronized boolean isUserFirstNext() {
+        return userFirstNext;
+    }
+
+    public synchronized void setUserFirstNext(boolean userFirst) {
+        if (userFirstNext != userFirst) {
+            userFirstNext = userFirst;
+            changed();
+        }
+    }
+
+    /**
+     * Returns the overall count of a result.
+     */
+    public synchronized long getTotal(int result) {
+        return totals[result];
+    }
+
+    public synchronized long getByDifficulty(AILogic.Difficulty difficulty, int result) {
+        return byDifficulty[difficulty.ordinal()][result];
+    }
+
+    public synchronized long getByFirstPlayer(boolean userFirst, int result) {
+        return byFirstPlayer[userFirst ? 0 : 1][result];
+    }
+
+    public synchronized long getByOpening(int openingCell, int result) {
+        return byOpening[openingCell][result];
+    }
+
+    /**
+     * Writes pending changes now, on the background thread; call when the app may be stopped.
+     * Does nothing once closed.
+     */
+    public synchronized void flush() {
+        if (!writer.isShutdown()) {
+            writer.execute(this::writeIfDirty);
+        }
+    }
+
+    /**
+     * Writes pending changes and stops the background thread. Further updates are not saved.
+     */
+    public synchronized void close() {
+        flush();
+        writer.shutdown();
+    }
+
+    // Called with the lock held; close() shuts the writer down under the same lock
+    private void changed() {
+        dirty = true;
+        if (!writeScheduled && !writer.isShutdown()) {
+            writeScheduled = true;
+            writer.schedule(this::writeIfDirty, WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void clearCounters() {
+        for (long[][] table : new long[][][]{byDifficulty, byFirstPlayer, byOpening}) {
+            for (long[] counts : table) {
+                Arrays.fill(counts, 0);
+            }
+        }
+        Arrays.fill(totals, 0);
+    }
+
+    /**
+     * Runs on the writer thread. The counters are copied under the lock and written outside it,
+     * so the UI thread never waits for the disk.
+     */
+    private void writeIfDirty() {
+        byte[] data;
+        synchronized (this) {
+            writeScheduled = false;
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            data = serialize();
+        }
+        try {
+            replaceFile(data);
+        } catch (IOException e) {
+            synchronized (this) {
+                changed(); // Try again with the next batch
+            }
+        }
+    }
+
+    private void replaceFile(byte[] data) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(data);
+            out.getFD().sync(); // On disk before the rename makes it the real file
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    private byte[] serialize() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(bytes))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(userFirstNext);
+            writeCounts(out, totals);
+            out.writeInt(byDifficulty.length);
+            for (long[] counts : byDifficulty) {
+                writeCounts(out, counts);
+            }
+            for (long[] counts : byFirstPlayer) {
+                writeCounts(out, counts);
+            }
+            // Only openings that were played, most boards use a handful of cells
+            int openings = 0;
+            for (long[] counts : byOpening) {
+                if (counts[0] + counts[1] + counts[2] != 0) {
+                    openings++;
+                }
+            }
+            out.writeInt(openings);
+            for (int cell = 0; cell < byOpening.length; cell++) {
+                long[] counts = byOpening[cell];
+                if (counts[0] + counts[1] + counts[2] != 0) {
+                    out.writeByte(cell);
+                    writeCounts(out, counts);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Not thrown by in-memory streams
+        }
+        return bytes.toByteArray();
+    }
+
+    private void read() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a statistics file: " + file);
+            }
+            userFirstNext = in.readBoolean();
+            readCounts(in, totals);
+            int difficulties = in.readInt();
+            for (int i = 0; i < difficulties; i++) {
+                readCounts(in, i < byDifficulty.length ? byDifficulty[i] : new long[3]);
+            }
+            for (long[] counts : byFirstPlayer) {
+                readCounts(in, counts);
+            }
+            int openings = in.readInt();
+            for (int i = 0; i < openings; i++) {
+                int cell = in.readUnsignedByte();
+                if (cell >= byOpening.length) {
+                    throw new IOException("Bad opening cell " + cell + " in " + file);
+                }
+                readCounts(in, byOpening[cell]);
+            }
+        }
+    }
+
+    private static void writeCounts(DataOutputStream out, long[] counts) throws IOException {
+        for (long count : counts) {
+            out.writeLong(count);
+        }
+    }
+
+    private static void readCounts(DataInputStream in, long[] counts) throws IOException {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = in.readLong();
+        }
+    }
+}
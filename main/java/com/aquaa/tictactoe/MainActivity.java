@@ -12,6 +12,9 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        // Read the settings in the background, ready for GameActivity
+        AppPreferences.preload(this);
+
         Button playAiButton = findViewById(R.id.play_ai_button);
         Button settingsButton = findViewById(R.id.settings_button);
 
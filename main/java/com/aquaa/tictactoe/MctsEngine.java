@@ -0,0 +1,516 @@
+package com.aquaa.tictactoe;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Monte Carlo tree search (UCT) over bitboards, for boards too large to search to the end.
+ *
+ * Each playout walks down the tree by the UCT formula, adds the children of the node it
+ * stops at, finishes the game with random moves and credits the result to every node on the
+ * way. The search is anytime: it stops when the SearchLimits run out (time, or playouts as the
+ * node limit) and plays the most visited move.
+ *
+ * The tree lives in a pool of primitive arrays indexed by node, with the children of a node
+ * stored next to each other. The pool is split into chunks that are allocated when the tree
+ * first grows into them, so small searches take little memory and a search within the size
+ * the tree had before allocates nothing. With a parallelism above 1 several threads grow the
+ * same tree. Visit and reward counters are atomic, and a thread counts its visit before the
+ * playout finishes, so the node looks like a loss to the other threads until the real result
+ * arrives (virtual loss) and they spread out over different moves.
+ *
+ * The tree is kept between searches: if the next position follows from the last root by moves
+ * in the tree, the subtree below them becomes the new root with its statistics. The engine is
+ * not thread-safe; every thread asking for moves needs its own.
+ */
+final class MctsEngine {
+
+    /** Playouts per move when the limits give neither a time nor a playout budget. */
+    static final int DEFAULT_PLAYOUTS = 20_000;
+    /** Most tree nodes an engine grows to by default; memory is only taken as the tree grows. */
+    static final int DEFAULT_CAPACITY = 1 << 18;
+
+    // UCT exploration constant; sqrt(2) in theory, a little less plays better on small boards
+    private static final double EXPLORATION = 1.2;
+    // A node gets children once it has been visited this often, which keeps the tree small
+    private static final int EXPAND_VISITS = 2;
+    // Time and cancellation are checked once every this many playouts of each thread
+    private static final int LIMIT_CHECK_INTERVAL = 16;
+    // firstChild values of nodes without children
+    private static final int UNEXPANDED = -1;
+    private static final int EXPANDING = -2;
+    // Rewards are counted in half points: 2 for a win, 1 for a draw
+    private static final int WIN_REWARD = 2;
+    // Nodes per chunk of the pool
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int capacity;
+    // Node pool in chunks, allocated as the tree first reaches them and kept for later searches
+    private final AtomicReferenceArray<Chunk> chunks;
+    private final AtomicInteger nodeCount = new AtomicInteger();
+
+    private final ForkJoinPool pool;
+    private final Worker[] workers;
+    private final ForkJoinTask<?>[] helperTasks;
+
+    // The root and its position, kept for reuse by the next search
+    private int root = -1;
+    private BoardGeometry rootGeometry;
+    private long rootOwnMask;
+    private long rootOtherMask;
+
+    // Budget of the running search
+    private final AtomicLong playouts = new AtomicLong();
+    private long playoutLimit;
+    private boolean timed;
+    private long deadlineNanos; // Only meaningful when timed
+    private CancellationToken cancellation = CancellationToken.NONE;
+    private volatile boolean stopped;
+
+    private int maxDepthReached;
+
+    /**
+     * @param capacity Number of tree nodes; when they run out the tree stops growing.
+     * @param parallelism Number of threads running playouts; 1 runs them on the calling thread.
+     */
+    MctsEngine(int capacity, int parallelism) {
+        this.capacity = capacity;
+        chunks = new AtomicReferenceArray<>((capacity + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+
+        int threads = Math.max(1, parallelism);
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker();
+        }
+        // The calling thread runs the first worker, the pool the others
+        helperTasks = new ForkJoinTask<?>[threads - 1];
+        for (int i = 1; i < threads; i++) {
+            helperTasks[i - 1] = ForkJoinTask.adapt(workers[i]::run);
+        }
+        pool = threads > 1 ? new ForkJoinPool(threads - 1) : null;
+    }
+
+    int getParallelism() {
+        return workers.length;
+    }
+
+    /**
+     * Stops the helper threads of a parallel engine. The engine cannot search afterwards.
+     */
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Searches the position for the player owning ownMask.
+     *
+     * @param random Seeds the playouts; with one thread, a playout limit and a fresh tree the
+     *               move only depends on it.
+     * @return The cell of the most visited move, or -1 if the position has no moves.
+     */
+    int search(BoardGeometry geometry, long ownMask, long otherMask, SearchLimits limits,
+               CancellationToken cancellation, RandomSource random) {
+        long empty = geometry.getFullMask() & ~(ownMask | otherMask);
+        maxDepthReached = 0;
+        playouts.set(0);
+        if (empty == 0 || geometry.isWin(ownMask) || geometry.isWin(otherMask)) {
+            return -1;
+        }
+
+        int reused = findRoot(geometry, ownMask, otherMask);
+        if (reused >= 0 && capacity - nodeCount.get() >= capacity / 4) {
+            root = reused;
+        } else {
+            // Start over; also when the pool is nearly full, as the old tree cannot be compacted
+            nodeCount.set(1);
+            root = 0;
+            initializeNode(0, -1);
+        }
+        rootGeometry = geometry;
+        rootOwnMask = ownMask;
+        rootOtherMask = otherMask;
+
+        timed = limits.getTimeMillis() > 0;
+        deadlineNanos = timed ? System.nanoTime() + limits.getTimeMillis() * 1_000_000L : 0;
+        playoutLimit = limits.getNodeLimit() > 0 ? limits.getNodeLimit() : timed ? Long.MAX_VALUE : DEFAULT_PLAYOUTS;
+        this.cancellation = cancellation;
+        stopped = false;
+
+        for (Worker worker : workers) {
+            worker.reset(random.nextLong());
+        }
+        for (ForkJoinTask<?> task : helperTasks) {
+            task.reinitialize();
+            pool.execute(task);
+        }
+        workers[0].run();
+        for (ForkJoinTask<?> task : helperTasks) {
+            task.join();
+        }
+        for (Worker worker : workers) {
+            maxDepthReached = Math.max(maxDepthReached, worker.maxDepth);
+        }
+        this.cancellation = CancellationToken.NONE;
+
+        int best = bestChild(root, random);
+        return best >= 0 ? cell(best) : Long.numberOfTrailingZeros(empty);
+    }
+
+    /**
+     * Number of playouts of the last search, over all threads.
+     */
+    long getPlayouts() {
+        return Math.min(playouts.get(), playoutLimit);
+    }
+
+    /**
+     * Deepest tree level any playout of the last search reached before its random part.
+     */
+    int getMaxDepthReached() {
+        return maxDepthReached;
+    }
+
+    /**
+     * Expected result of the last search for the player to move, from -1000 (certain loss)
+     * to 1000 (certain win), taken from the most visited move.
+     */
+    int getScore() {
+        int best = bestChild(root, null);
+        if (best < 0 || visits(best) == 0) {
+            return 0;
+        }
+        return (int) Math.round(1000.0 * (rewards(best) - visits(best)) / visits(best));
+    }
+
+    /**
+     * Follows the most visited moves from the root, filling line with their cells.
+     *
+     * @return The number of cells written.
+     */
+    int principalVariation(int[] line) {
+        int length = 0;
+        for (int node = bestChild(root, null); node >= 0 && length < line.length; node = bestChild(node, null)) {
+            line[length++] = cell(node);
+        }
+        return length;
+    }
+
+    /**
+     * Finds the node for the position if it follows from the current root by moves already in
+     * the tree, with the same player to move.
+     *
+     * @return The node, or -1 if the tree cannot be reused.
+     */
+    private int findRoot(BoardGeometry geometry, long ownMask, long otherMask) {
+        if (root < 0 || geometry != rootGeometry
+                || (rootOwnMask & ~ownMask) != 0 || (rootOtherMask & ~otherMask) != 0) {
+            return -1;
+        }
+        long moverAdded = ownMask & ~rootOwnMask;
+        long waiterAdded = otherMask & ~rootOtherMask;
+        if (Long.bitCount(moverAdded) != Long.bitCount(waiterAdded)) {
+            return -1;
+        }
+        int node = root;
+        while ((moverAdded | waiterAdded) != 0) {
+            int first = firstChild(node);
+            if (first < 0) {
+                return -1;
+            }
+            int next = -1;
+            for (int child = first; child < first + childCount(node); child++) {
+                if ((moverAdded & 1L << cell(child)) != 0) {
+                    next = child;
+                    break;
+                }
+            }
+            if (next < 0) {
+                return -1;
+            }
+            long rest = moverAdded & ~(1L << cell(next));
+            moverAdded = waiterAdded;
+            waiterAdded = rest;
+            node = next;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the most visited child, ties broken at random (or by cell without a generator),
+     * or -1 if the node has no children.
+     */
+    private int bestChild(int node, RandomSource random) {
+        if (node < 0) {
+            return -1;
+        }
+        int first = firstChild(node);
+        if (first < 0) {
+            return -1;
+        }
+        int best = -1;
+        int bestVisits = -1;
+        int ties = 0;
+        for (int child = first; child < first + childCount(node); child++) {
+            int count = visits(child);
+            if (count > bestVisits) {
+                best = child;
+                bestVisits = count;
+                ties = 1;
+            } else if (count == bestVisits && random != null && random.nextInt(++ties) == 0) {
+                best = child; // Reservoir sampling keeps each tied child equally likely
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds the children of a node the caller has marked EXPANDING, one per empty cell.
+     *
+     * @return The first child, or -1 if the pool is full (the node is left unexpanded).
+     */
+    private int expand(int node, long empty) {
+        int count = Long.bitCount(empty);
+        int first;
+        do {
+            first = nodeCount.get();
+            if (first + count > capacity) {
+                chunk(node).firstChild.set(node & CHUNK_MASK, UNEXPANDED);
+                return -1;
+            }
+        } while (!nodeCount.compareAndSet(first, first + count));
+        for (int index = first >>> CHUNK_BITS; index <= (first + count - 1) >>> CHUNK_BITS; index++) {
+            if (chunks.get(index) == null) {
+                chunks.compareAndSet(index, null, new Chunk()); // Another thread may have won
+            }
+        }
+
+        int child = first;
+        for (long rest = empty; rest != 0; rest &= rest - 1) {
+            initializeNode(child++, Long.numberOfTrailingZeros(rest));
+        }
+        Chunk chunk = chunk(node);
+        chunk.childCounts[node & CHUNK_MASK] = count;
+        chunk.firstChild.set(node & CHUNK_MASK, first); // Publishes the children to the other threads
+        return first;
+    }
+
+    /**
+     * Sets up a fresh leaf. Creates the chunk of the root node; expand creates the others
+     * before their nodes are set up.
+     */
+    private void initializeNode(int node, int cell) {
+        Chunk chunk = chunks.get(node >>> CHUNK_BITS);
+        if (chunk == null) {
+            chunk = new Chunk(); // Only node 0, set up before any thread runs
+            chunks.set(node >>> CHUNK_BITS, chunk);
+        }
+        int offset = node & CHUNK_MASK;
+        chunk.cells[offset] = cell;
+        chunk.firstChild.set(offset, UNEXPANDED);
+        chunk.visits.set(offset, 0);
+        chunk.rewards.set(offset, 0);
+    }
+
+    private Chunk chunk(int node) {
+        return chunks.get(node >>> CHUNK_BITS);
+    }
+
+    private int cell(int node) {
+        return chunk(node).cells[node & CHUNK_MASK];
+    }
+
+    private int childCount(int node) {
+        return chunk(node).childCounts[node & CHUNK_MASK];
+    }
+
+    private int firstChild(int node) {
+        return chunk(node).firstChild.get(node & CHUNK_MASK);
+    }
+
+    private int visits(int node) {
+        return chunk(node).visits.get(node & CHUNK_MASK);
+    }
+
+    private int rewards(int node) {
+        return chunk(node).rewards.get(node & CHUNK_MASK);
+    }
+
+    private static boolean isWinThrough(BoardGeometry geometry, long mask, int cell) {
+        for (int line : geometry.getLinesThroughCell(cell)) {
+            long lineMask = geometry.getLineMask(line);
+            if ((mask & lineMask) == lineMask) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A slice of the node pool: the move leading to each node, its children and its playout
+     * statistics. Rewards are from the view of the player who made the node's move.
+     */
+    private static final class Chunk {
+        final int[] cells = new int[CHUNK_SIZE];
+        final int[] childCounts = new int[CHUNK_SIZE];
+        final AtomicIntegerArray firstChild = new AtomicIntegerArray(CHUNK_SIZE);
+        final AtomicIntegerArray visits = new AtomicIntegerArray(CHUNK_SIZE);
+        final AtomicIntegerArray rewards = new AtomicIntegerArray(CHUNK_SIZE);
+    }
+
+    /** One thread's playouts, with its own generator and scratch buffers. */
+    private final class Worker {
+        private final int[] path = new int[BoardGeometry.MAX_CELLS + 1];
+        private final int[] emptyCells = new int[BoardGeometry.MAX_CELLS];
+        private long seed;
+        private int maxDepth;
+
+        void reset(long seed) {
+            this.seed = seed != 0 ? seed : 0x9E3779B97F4A7C15L; // xorshift needs a non-zero state
+            maxDepth = 0;
+        }
+
+        void run() {
+            for (int n = 1; !stopped; n++) {
+                if (playouts.incrementAndGet() > playoutLimit) {
+                    stopped = true;
+                    break;
+                }
+                playout();
+                if (n % LIMIT_CHECK_INTERVAL == 0
+                        && (timed && System.nanoTime() - deadlineNanos >= 0 || cancellation.isCancelled())) {
+                    stopped = true;
+                }
+            }
+        }
+
+        /**
+         * Runs one playout: selection and expansion in the tree, then random moves to the end.
+         */
+        private void playout() {
+            BoardGeometry geometry = rootGeometry;
+            long own = rootOwnMask; // Player to move at the current node
+            long other = rootOtherMask;
+            long full = geometry.getFullMask();
+            int node = root;
+            int depth = 0;
+            path[depth++] = node;
+            chunk(node).visits.incrementAndGet(node & CHUNK_MASK);
+
+            // Side 0 is the player to move at the root; -1 means a draw
+            int winner;
+            while (true) {
+                int first = firstChild(node);
+                if (first == UNEXPANDED && (node == root || visits(node) >= EXPAND_VISITS)
+                        && chunk(node).firstChild.compareAndSet(node & CHUNK_MASK, UNEXPANDED, EXPANDING)) {
+                    first = expand(node, full & ~(own | other));
+                }
+                if (first < 0) {
+                    winner = randomGame(geometry, own, other, (depth - 1) & 1);
+                    break;
+                }
+
+                int child = select(node, first);
+                chunk(child).visits.incrementAndGet(child & CHUNK_MASK); // Virtual loss until the result is added
+                int cell = cell(child);
+                long moved = own | 1L << cell;
+                own = other;
+                other = moved;
+                path[depth++] = child;
+                node = child;
+                if (isWinThrough(geometry, moved, cell)) {
+                    winner = depth & 1; // The side that made the move, see backPropagate
+                    break;
+                }
+                if ((own | other) == full) {
+                    winner = -1;
+                    break;
+                }
+            }
+            if (depth - 1 > maxDepth) {
+                maxDepth = depth - 1;
+            }
+            backPropagate(depth, winner);
+        }
+
+        /**
+         * Picks the child with the best UCT value; unvisited children come first.
+         */
+        private int select(int node, int first) {
+            double logVisits = Math.log(Math.max(1, visits(node)));
+            int best = first;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int child = first; child < first + childCount(node); child++) {
+                int count = visits(child);
+                if (count == 0) {
+                    return child;
+                }
+                double value = rewards(child) / (double) (WIN_REWARD * count)
+                        + EXPLORATION * Math.sqrt(logVisits / count);
+                if (value > bestValue) {
+                    best = child;
+                    bestValue = value;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Plays random moves until the game ends.
+         *
+         * @param side The side to move in this position.
+         * @return The winning side, or -1 for a draw.
+         */
+        private int randomGame(BoardGeometry geometry, long own, long other, int side) {
+            int count = 0;
+            for (long rest = geometry.getFullMask() & ~(own | other); rest != 0; rest &= rest - 1) {
+                emptyCells[count++] = Long.numberOfTrailingZeros(rest);
+            }
+            // Draws the empty cells in random order, a Fisher-Yates shuffle done one step per move
+            for (int i = 0; i < count; i++) {
+                int j = i + nextInt(count - i);
+                int cell = emptyCells[j];
+                emptyCells[j] = emptyCells[i];
+                own |= 1L << cell;
+                if (isWinThrough(geometry, own, cell)) {
+                    return side;
+                }
+                long swap = own;
+                own = other;
+                other = swap;
+                side ^= 1;
+            }
+            return -1;
+        }
+
+        /**
+         * Adds the result to every node of the path. The node at depth d was reached by a move
+         * of side (d + 1) & 1, so the root counts for the opponent of the player to move.
+         */
+        private void backPropagate(int depth, int winner) {
+            for (int d = 0; d < depth; d++) {
+                int reward = winner < 0 ? WIN_REWARD / 2 : winner == ((d + 1) & 1) ? WIN_REWARD : 0;
+                if (reward != 0) {
+                    chunk(path[d]).rewards.addAndGet(path[d] & CHUNK_MASK, reward);
+                }
+            }
+        }
+
+        /**
+         * Returns a random int in [0, bound) from a xorshift64* generator.
+         */
+        private int nextInt(int bound) {
+            seed ^= seed >>> 12;
+            seed ^= seed << 25;
+            seed ^= seed >>> 27;
+            return (int) (((seed * 0x2545F4914F6CDD1DL) >>> 32) * bound >>> 32);
+        }
+    }
+}
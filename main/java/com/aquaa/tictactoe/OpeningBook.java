@@ -0,0 +1,147 @@
+package com.aquaa.tictactoe;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Precomputed opening moves for boards where the first moves are expensive to search.
+ * The book is built offline by OpeningBookBuilder from self-play and answers a position with
+ * one of the moves the search played there, chosen with the weight of how often it was played.
+ *
+ * Positions are keyed by the position key of their canonical form (see
+ * BoardGeometry.canonicalSymmetry), relative to the player to move, so one entry covers all
+ * rotations and mirror images and several board sizes fit in one book.
+ *
+ * File layout, big-endian: a header of magic, version and record count (ints), then records
+ * sorted by key, each a long key and an int holding the canonical cell in the top 8 bits and
+ * the weight in the low 24. A position has one record per book move.
+ */
+public final class OpeningBook {
+
+    static final int MAGIC = 0x54544F42; // "TTOB"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 12;
+    static final int RECORD_BYTES = 12;
+    static final int MAX_WEIGHT = (1 << 24) - 1;
+
+    private final ByteBuffer buffer;
+    private final int recordCount;
+
+    private OpeningBook(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an opening book");
+        }
+        int count = buffer.getInt(8);
+        if (count < 0 || (long) count * RECORD_BYTES > buffer.limit() - HEADER_BYTES) {
+            throw new IOException("Opening book is truncated");
+        }
+        this.buffer = buffer;
+        this.recordCount = count;
+    }
+
+    /**
+     * Maps a book file into memory; pages are only read when a lookup touches them.
+     */
+    public static OpeningBook map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads a whole book from a stream, e.g. an app asset, and closes the stream.
+     */
+    public static OpeningBook read(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = stream.read(chunk)) != -1) {
+                bytes.write(chunk, 0, read);
+            }
+            return new OpeningBook(ByteBuffer.wrap(bytes.toByteArray()));
+        }
+    }
+
+    /**
+     * Returns the number of stored moves, over all positions.
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the key a position is stored under.
+     */
+    static long key(BoardGeometry geometry, long ownMask, long otherMask) {
+        int symmetry = geometry.canonicalSymmetry(ownMask, otherMask);
+        return geometry.positionKey(geometry.transform(ownMask, symmetry), geometry.transform(otherMask, symmetry));
+    }
+
+    /**
+     * Picks a book move for the player owning ownMask, weighted by how often it was played.
+     *
+     * @return The cell of the move, or -1 if the position is not in the book.
+     */
+    int pickMove(BoardGeometry geometry, long ownMask, long otherMask, RandomSource random) {
+        int symmetry = geometry.canonicalSymmetry(ownMask, otherMask);
+        long key = geometry.positionKey(geometry.transform(ownMask, symmetry), geometry.transform(otherMask, symmetry));
+        int first = firstRecord(key);
+        int end = first;
+        long totalWeight = 0;
+        while (end < recordCount && keyAt(end) == key) {
+            totalWeight += valueAt(end) & MAX_WEIGHT;
+            end++;
+        }
+        if (totalWeight == 0) {
+            return -1;
+        }
+
+        long target = random.nextInt((int) totalWeight); // At most 64 moves of 2^24 each
+        int record = first;
+        for (long weight = valueAt(record) & MAX_WEIGHT; target >= weight; weight = valueAt(record) & MAX_WEIGHT) {
+            target -= weight;
+            record++;
+        }
+        int canonicalCell = valueAt(record) >>> 24;
+        if (canonicalCell >= geometry.getCellCount()) {
+            return -1; // A key collision with another board size
+        }
+        int cell = geometry.getInverseSymmetryCell(symmetry, canonicalCell);
+        if (((ownMask | otherMask) & 1L << cell) != 0) {
+            return -1; // A key collision with another position
+        }
+        return cell;
+    }
+
+    /**
+     * Binary search for the first record with the key, or the insertion point if there is none.
+     */
+    private int firstRecord(long key) {
+        int low = 0;
+        int high = recordCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keyAt(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(int record) {
+        return buffer.getLong(HEADER_BYTES + record * RECORD_BYTES);
+    }
+
+    private int valueAt(int record) {
+        return buffer.getInt(HEADER_BYTES + record * RECORD_BYTES + 8);
+    }
+}
@@ -0,0 +1,191 @@
+package com.aquaa.tictactoe;
+
+/**
+ * Precomputed perfect play for the 3x3 board.
+ * Every reachable position is stored with its minimax value and the mask of all optimal moves,
+ * so the DIFFICULT AI only needs a lookup. The table is solved once, on first use.
+ *
+ * Positions are stored relative to the player to move ("own" and "other" stones), which makes
+ * the table independent of whether X or O moves first.
+ */
+final class PerfectPlayTable {
+
+    // Every cell is empty, own or other, so 3^9 indices cover all boards
+    private static final int POSITIONS = 19683;
+
+    private static final BoardGeometry GEOMETRY = BoardGeometry.STANDARD;
+    private static final int CELLS = 9;
+    private static final int FULL = (1 << CELLS) - 1;
+
+    // Minimax value for the player to move, stored as plies to the result (see encodeValue)
+    private final byte[] values = new byte[POSITIONS];
+    // Mask of all equally optimal moves; 0 for positions that are unreachable or already over
+    private final short[] bestMoves = new short[POSITIONS];
+    private int positionCount;
+
+    private static class Holder {
+        static final PerfectPlayTable INSTANCE = new PerfectPlayTable();
+    }
+
+    private PerfectPlayTable() {
+        solve(0, 0);
+    }
+
+    /**
+     * Returns the shared table, solving it on the first call.
+     */
+    static PerfectPlayTable getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns the mask of optimal moves for the player owning ownMask, or 0 if the position
+     * is not a reachable position with moves left.
+     */
+    int getBestMoves(int ownMask, int otherMask) {
+        return bestMoves[index(ownMask, otherMask)];
+    }
+
+    /**
+     * Returns the minimax value of the position for the player owning ownMask.
+     */
+    int getValue(int ownMask, int otherMask) {
+        return decodeValue(values[index(ownMask, otherMask)]);
+    }
+
+    /**
+     * Returns the number of reachable positions that still have moves left.
+     */
+    int getPositionCount() {
+        return positionCount;
+    }
+
+    /**
+     * Verification mode: checks every stored position against the minimax search.
+     * Run by tools/.../PerfectPlayTableCheck.
+     *
+     * @return The number of positions whose value or optimal move set differs from the search.
+     */
+    int verify() {
+        // A separate engine and table, so the check does not reuse anything the game has stored
+        SearchEngine engine = new SearchEngine(new TranspositionTable(16));
+        int mismatches = 0;
+        for (int index = 0; index < POSITIONS; index++) {
+            if (bestMoves[index] == 0) {
+                continue;
+            }
+            int ownMask = 0;
+            int otherMask = 0;
+            int rest = index;
+            for (int cell = 0; cell < CELLS; cell++) {
+                int digit = rest % 3;
+                rest /= 3;
+                if (digit == 1) {
+                    ownMask |= 1 << cell;
+                } else if (digit == 2) {
+                    otherMask |= 1 << cell;
+                }
+            }
+
+            int bestScore = Integer.MIN_VALUE;
+            int searchedMoves = 0;
+            int occupied = ownMask | otherMask;
+            int draft = CELLS - Integer.bitCount(occupied);
+            for (int cell = 0; cell < CELLS; cell++) {
+                int bit = 1 << cell;
+                if ((occupied & bit) == 0) {
+                    int score = -engine.minimax(GEOMETRY, otherMask, ownMask | bit, 0, draft - 1, -SearchEngine.INFINITY, SearchEngine.INFINITY);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        searchedMoves = bit;
+                    } else if (score == bestScore) {
+                        searchedMoves |= bit;
+                    }
+                }
+            }
+            int searchedValue = engine.minimax(GEOMETRY, ownMask, otherMask, 0, draft, -SearchEngine.INFINITY, SearchEngine.INFINITY);
+            if (searchedMoves != bestMoves[index] || searchedValue != decodeValue(values[index])) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * Solves the position by exhaustive negamax, memoizing every non-terminal position.
+     *
+     * @return The value of the position for the player to move.
+     */
+    private int solve(int ownMask, int otherMask) {
+        if (GEOMETRY.isWin(otherMask)) {
+            return -SearchEngine.WIN_SCORE; // Player who just moved has won
+        }
+        int occupied = ownMask | otherMask;
+        if (occupied == FULL) {
+            return 0; // Tie
+        }
+
+        int index = index(ownMask, otherMask);
+        if (bestMoves[index] != 0) {
+            return decodeValue(values[index]);
+        }
+
+        int bestScore = Integer.MIN_VALUE;
+        int moves = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            int bit = 1 << cell;
+            if ((occupied & bit) == 0) {
+                // Score of the move as seen from this position: the child's value, negated
+                int score = -solve(otherMask, ownMask | bit);
+                if (score > bestScore) {
+                    bestScore = score;
+                    moves = bit;
+                } else if (score == bestScore) {
+                    moves |= bit;
+                }
+            }
+        }
+
+        // One ply further from the result, so a win or loss moves one step towards 0
+        int value = bestScore > 0 ? bestScore - 1 : bestScore < 0 ? bestScore + 1 : 0;
+        values[index] = encodeValue(value);
+        bestMoves[index] = (short) moves;
+        positionCount++;
+        return value;
+    }
+
+    /**
+     * Packs a value into a byte as the number of plies to the result: 0 for a draw,
+     * +(plies + 1) for a win and -(plies + 1) for a loss.
+     */
+    private static byte encodeValue(int value) {
+        if (value > 0) {
+            return (byte) (SearchEngine.WIN_SCORE - value + 1);
+        } else if (value < 0) {
+            return (byte) -(SearchEngine.WIN_SCORE + value + 1);
+        }
+        return 0;
+    }
+
+    private static int decodeValue(byte code) {
+        if (code > 0) {
+            return SearchEngine.WIN_SCORE - (code - 1);
+        } else if (code < 0) {
+            return -(SearchEngine.WIN_SCORE + code + 1);
+        }
+        return 0;
+    }
+
+    private static int index(int ownMask, int otherMask) {
+        int index = 0;
+        for (int cell = CELLS - 1; cell >= 0; cell--) {
+            index *= 3;
+            if ((ownMask & (1 << cell)) != 0) {
+                index += 1;
+            } else if ((otherMask & (1 << cell)) != 0) {
+                index += 2;
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,61 @@
+package com.aquaa.tictactoe;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Where the AI draws its random choices from: random moves, picks among equally good moves,
+ * book moves and Monte Carlo playouts. A seeded source makes every choice reproducible.
+ *
+ * This plays the part of Java 17's RandomGenerator, which Android only offers from API 34.
+ */
+public interface RandomSource {
+
+    /**
+     * Returns a random int from 0 (inclusive) to bound (exclusive).
+     */
+    int nextInt(int bound);
+
+    long nextLong();
+
+    /**
+     * Draws from a Random, e.g. a seeded java.util.Random.
+     */
+    static RandomSource of(Random random) {
+        return new RandomSource() {
+            @Override
+            public int nextInt(int bound) {
+                return random.nextInt(bound);
+            }
+
+            @Override
+            public long nextLong() {
+                return random.nextLong();
+            }
+        };
+    }
+
+    /**
+     * Draws from a SplittableRandom; split it to give every thread or game its own source.
+     */
+    static RandomSource of(SplittableRandom random) {
+        return new RandomSource() {
+            @Override
+            public int nextInt(int bound) {
+                return random.nextInt(bound);
+            }
+
+            @Override
+            public long nextLong() {
+                return random.nextLong();
+            }
+        };
+    }
+
+    /**
+     * Returns a fast source that gives the same sequence for the same seed on every platform.
+     */
+    static RandomSource seeded(long seed) {
+        return of(new SplittableRandom(seed));
+    }
+}
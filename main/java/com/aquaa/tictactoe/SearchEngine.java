@@ -0,0 +1,814 @@
+package com.aquaa.tictactoe;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimax search with alpha-beta pruning over bitboards, driven by iterative deepening.
+ *
+ * The search deepens one ply at a time, seeding each iteration with an aspiration window
+ * around the previous score, and stops when the SearchLimits run out. The result is always
+ * the one from the deepest iteration that finished, so a move is ready whatever the budget.
+ *
+ * With a parallelism above 1 the root moves of every iteration are shared out to helper
+ * engines on a ForkJoinPool, which all use the same lock-free transposition table. Table
+ * entries are only used at the draft they were searched with, so the table never holds
+ * anything but true values and bounds for the current iteration; together with exact root
+ * windows this makes the result identical to the single-threaded search at the same depth.
+ *
+ * An analysis (analyze) searches every root move with a full window instead, so each gets its
+ * exact score at the depth reached, not just a bound; the moves share the table as usual.
+ *
+ * An engine holds the state of one search (node counter, deadline), so every thread needs
+ * its own engine. The transposition table is passed in and may be shared.
+ */
+final class SearchEngine {
+
+    // Score of a win found at depth 0; deeper wins score less so the AI prefers quicker wins.
+    // Kept far above any heuristic evaluation, so a forced result always outranks an estimate.
+    static final int WIN_SCORE = 1_000_000;
+    // Scores beyond this are forced wins or losses rather than heuristic estimates
+    static final int WIN_THRESHOLD = WIN_SCORE - BoardGeometry.MAX_CELLS;
+    static final int INFINITY = WIN_SCORE + 1;
+
+    // Half-width of the window placed around the previous iteration's score
+    private static final int ASPIRATION_WINDOW = 64;
+    // Limits are checked once every this many nodes of each engine
+    private static final int LIMIT_CHECK_INTERVAL = 256;
+
+    // Move ordering: wins first, then blocks, then killers; other moves sort by history score
+    private static final int WIN_ORDER = 1 << 30;
+    private static final int BLOCK_ORDER = 1 << 29;
+    private static final int KILLER_ORDER = 1 << 28;
+    // History scores are halved when one reaches this, keeping them below KILLER_ORDER
+    private static final int HISTORY_LIMIT = 1 << 24;
+
+    // Heuristic weight of a line holding n marks of one player and none of the other
+    private static final int[] LINE_WEIGHTS = new int[BoardGeometry.MAX_CELLS + 1];
+
+    static {
+        for (int n = 1; n < LINE_WEIGHTS.length; n++) {
+            LINE_WEIGHTS[n] = 1 << Math.min(2 * (n - 1), 16);
+        }
+    }
+
+    private final TranspositionTable table;
+    // The engine running the search and owning its budget: this engine, unless it is a helper
+    private final SearchEngine coordinator;
+    private final int parallelism;
+    private final ForkJoinPool pool;
+    private final SearchEngine[] helpers;
+    private final ForkJoinTask<?>[] helperTasks;
+
+    // Budget of the running search, owned by the coordinator and read by its helpers
+    private final AtomicLong sharedNodes = new AtomicLong();
+    private long nodeLimit;
+    private long deadlineNanos;
+    private CancellationToken cancellation = CancellationToken.NONE;
+    private volatile boolean limitsActive;
+    private volatile boolean stopped;
+
+    // Root moves of the current parallel iteration, handed out to helpers through nextRootMove
+    private final AtomicInteger nextRootMove = new AtomicInteger();
+    // Best root score found so far in the current iteration, used to narrow later windows
+    private final AtomicInteger rootBest = new AtomicInteger();
+    private final int[] rootCells = new int[BoardGeometry.MAX_CELLS];
+    private final int[] rootScores = new int[BoardGeometry.MAX_CELLS];
+    private int rootMoveCount;
+    private BoardGeometry rootGeometry;
+    private long rootOwnMask;
+    private long rootOtherMask;
+    private int rootDraft;
+    private int rootAlpha;
+    private int rootBeta;
+    // True in an analysis: every root move is searched with the full window
+    private boolean exactRoot;
+    // Root move scores by cell, of the running iteration and of the last finished one
+    private final int[] iterationValues = new int[BoardGeometry.MAX_CELLS];
+    private final int[] rootValues = new int[BoardGeometry.MAX_CELLS];
+
+    // State of this engine's own part of the search
+    private long nodes;
+    private int uncheckedNodes;
+    private boolean aborted;
+    private long tableHits;
+    private long tableMisses;
+    private long tableStores;
+    private long cutoffs;
+    private int maxDepthReached;
+
+    // Move ordering state. Killers (the last two moves per ply that caused a cut-off) are
+    // cleared every search; history scores (cut-offs per cell, weighted by draft) are kept
+    // for the whole game.
+    private boolean moveOrdering = true;
+    private final int[][] moveLists = new int[BoardGeometry.MAX_CELLS][BoardGeometry.MAX_CELLS];
+    private final int[][] moveScores = new int[BoardGeometry.MAX_CELLS][BoardGeometry.MAX_CELLS];
+    private final int[][] killers = new int[BoardGeometry.MAX_CELLS][2];
+    private final int[] history = new int[BoardGeometry.MAX_CELLS];
+    private BoardGeometry historyGeometry;
+    private int historyStones;
+
+    private int rootScore;
+    private int bestScore;
+    private int completedDepth;
+
+    SearchEngine(TranspositionTable table) {
+        this(table, 1);
+    }
+
+    /**
+     * @param parallelism Number of threads searching root moves; 1 searches on the calling thread.
+     */
+    SearchEngine(TranspositionTable table, int parallelism) {
+        this.table = table;
+        this.coordinator = this;
+        this.parallelism = Math.max(1, parallelism);
+        if (this.parallelism > 1) {
+            pool = new ForkJoinPool(this.parallelism);
+            helpers = new SearchEngine[this.parallelism];
+            helperTasks = new ForkJoinTask<?>[this.parallelism];
+            for (int i = 0; i < this.parallelism; i++) {
+                SearchEngine helper = new SearchEngine(table, this);
+                helpers[i] = helper;
+                helperTasks[i] = ForkJoinTask.adapt(helper::searchRootMoves);
+            }
+        } else {
+            pool = null;
+            helpers = new SearchEngine[0];
+            helperTasks = new ForkJoinTask<?>[0];
+        }
+    }
+
+    private SearchEngine(TranspositionTable table, SearchEngine coordinator) {
+        this.table = table;
+        this.coordinator = coordinator;
+        this.parallelism = 1;
+        this.pool = null;
+        this.helpers = new SearchEngine[0];
+        this.helperTasks = new ForkJoinTask<?>[0];
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Turns move ordering on or off (on by default). Without it moves are searched in cell
+     * order after the table move, which is only useful to measure what the ordering saves.
+     */
+    void setMoveOrdering(boolean enabled) {
+        moveOrdering = enabled;
+        for (SearchEngine helper : helpers) {
+            helper.moveOrdering = enabled;
+        }
+    }
+
+    /**
+     * Stops the helper threads of a parallel engine. The engine cannot search afterwards.
+     */
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Searches the position for the player owning ownMask.
+     *
+     * @return The mask of all equally best moves of the deepest completed iteration,
+     *         or 0 if the position has no moves.
+     */
+    long search(BoardGeometry geometry, long ownMask, long otherMask, SearchLimits limits) {
+        return search(geometry, ownMask, otherMask, limits, CancellationToken.NONE);
+    }
+
+    /**
+     * Searches like search(geometry, ownMask, otherMask, limits), but also stops when the token
+     * is cancelled, even during the first iteration.
+     *
+     * @return The best moves of the deepest completed iteration; 0 if cancelled before the first one.
+     */
+    long search(BoardGeometry geometry, long ownMask, long otherMask, SearchLimits limits, CancellationToken cancellation) {
+        return search(geometry, ownMask, otherMask, limits, cancellation, false);
+    }
+
+    /**
+     * Searches every move of the position for the player owning ownMask to its exact score,
+     * deepening until the limits run out or every score is a forced result. Read the scores
+     * with getMoveScore. Costs more than search, which only needs the best moves exactly.
+     *
+     * @return The moves scored by the deepest completed iteration: all empty cells, or 0 if
+     *         cancelled before the first iteration finished.
+     */
+    long analyze(BoardGeometry geometry, long ownMask, long otherMask, SearchLimits limits, CancellationToken cancellation) {
+        long emptyMask = ~(ownMask | otherMask) & geometry.getFullMask();
+        search(geometry, ownMask, otherMask, limits, cancellation, true);
+        return completedDepth > 0 ? emptyMask : 0;
+    }
+
+    private long search(BoardGeometry geometry, long ownMask, long otherMask, SearchLimits limits, CancellationToken cancellation,
+                        boolean exactRoot) {
+        long start = System.nanoTime();
+        nodeLimit = limits.getNodeLimit() > 0 ? limits.getNodeLimit() : Long.MAX_VALUE;
+        deadlineNanos = limits.getTimeMillis() > 0 ? start + limits.getTimeMillis() * 1_000_000L : Long.MAX_VALUE;
+        this.cancellation = cancellation;
+        this.exactRoot = exactRoot;
+        sharedNodes.set(0);
+        // The first iteration always runs to the end, so there is a move even on a tiny budget
+        limitsActive = false;
+        stopped = false;
+        int stones = Long.bitCount(ownMask | otherMask);
+        resetSearchState(geometry, stones);
+        for (SearchEngine helper : helpers) {
+            helper.resetSearchState(geometry, stones);
+        }
+        completedDepth = 0;
+
+        int maxDepth = Long.bitCount(~(ownMask | otherMask) & geometry.getFullMask());
+        if (limits.getMaxDepth() > 0) {
+            maxDepth = Math.min(maxDepth, limits.getMaxDepth());
+        }
+        long bestMoves = 0;
+        int score = 0;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int alpha = -INFINITY;
+            int beta = INFINITY;
+            if (depth > 1 && !exactRoot) {
+                alpha = score - ASPIRATION_WINDOW;
+                beta = score + ASPIRATION_WINDOW;
+            }
+
+            long moves;
+            while (true) {
+                if (pool != null) {
+                    moves = searchRootParallel(geometry, ownMask, otherMask, depth, alpha, beta, bestMoves);
+                } else {
+                    moves = searchRoot(geometry, ownMask, otherMask, depth, alpha, beta, bestMoves);
+                }
+                if (stopped) {
+                    break;
+                }
+                // Outside the aspiration window the scores are only bounds, so search again
+                if (rootScore <= alpha) {
+                    alpha = -INFINITY;
+                } else if (rootScore >= beta) {
+                    beta = INFINITY;
+                } else {
+                    break;
+                }
+            }
+            if (stopped) {
+                break;
+            }
+
+            bestMoves = moves;
+            score = rootScore;
+            completedDepth = depth;
+            limitsActive = true;
+            if (exactRoot) {
+                System.arraycopy(iterationValues, 0, rootValues, 0, rootValues.length);
+                if (allForced(~(ownMask | otherMask) & geometry.getFullMask(), depth)) {
+                    break;
+                }
+            } else if (isForced(score, depth)) {
+                break; // A forced result inside the horizon cannot change with a deeper search
+            }
+        }
+        bestScore = score;
+
+        long hits = tableHits;
+        long misses = tableMisses;
+        long stores = tableStores;
+        for (SearchEngine helper : helpers) {
+            hits += helper.tableHits;
+            misses += helper.tableMisses;
+            stores += helper.tableStores;
+        }
+        table.addCounters(hits, misses, stores);
+        return bestMoves;
+    }
+
+    /**
+     * Returns true if a root score at the given depth is a forced result that a deeper search
+     * cannot change.
+     */
+    private static boolean isForced(int score, int depth) {
+        return Math.abs(score) > WIN_THRESHOLD && WIN_SCORE - Math.abs(score) < depth;
+    }
+
+    private boolean allForced(long moves, int depth) {
+        for (; moves != 0; moves &= moves - 1) {
+            if (!isForced(rootValues[Long.numberOfTrailingZeros(moves)], depth)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Score of a move of the last analysis, for the player who made it, like getBestScore.
+     * Only meaningful for the cells analyze returned.
+     */
+    int getMoveScore(int cell) {
+        return rootValues[cell];
+    }
+
+    /**
+     * Score of the best moves returned by the last search.
+     */
+    int getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * Depth of the last iteration the last search finished.
+     */
+    int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Number of positions visited by the last search, over all its threads.
+     */
+    long getNodes() {
+        long total = nodes;
+        for (SearchEngine helper : helpers) {
+            total += helper.nodes;
+        }
+        return total;
+    }
+
+    /**
+     * Number of alpha-beta cut-offs in the last search, over all its threads.
+     */
+    long getCutoffs() {
+        long total = cutoffs;
+        for (SearchEngine helper : helpers) {
+            total += helper.cutoffs;
+        }
+        return total;
+    }
+
+    /**
+     * Deepest ply reached by the last search, over all its threads.
+     */
+    int getMaxDepthReached() {
+        int max = maxDepthReached;
+        for (SearchEngine helper : helpers) {
+            max = Math.max(max, helper.maxDepthReached);
+        }
+        return max;
+    }
+
+    /**
+     * Transposition table hits of the last search, over all its threads.
+     */
+    long getTableHits() {
+        long total = tableHits;
+        for (SearchEngine helper : helpers) {
+            total += helper.tableHits;
+        }
+        return total;
+    }
+
+    /**
+     * Writes the expected line of play into line: firstCell, then the moves the table holds for
+     * each following position, until the game ends, the table has no move or line is full.
+     *
+     * @return The number of cells written.
+     */
+    int principalVariation(BoardGeometry geometry, long ownMask, long otherMask, int firstCell, int[] line) {
+        int length = 0;
+        int cell = firstCell;
+        while (length < line.length) {
+            line[length++] = cell;
+            long moved = ownMask | (1L << cell);
+            ownMask = otherMask;
+            otherMask = moved;
+            if (geometry.isWin(otherMask) || (ownMask | otherMask) == geometry.getFullMask()) {
+                break;
+            }
+            int symmetry = geometry.canonicalSymmetry(ownMask, otherMask);
+            long entry = table.probe(geometry.positionKey(geometry.transform(ownMask, symmetry), geometry.transform(otherMask, symmetry)));
+            int canonicalMove = entry == 0 ? TranspositionTable.NO_MOVE : TranspositionTable.move(entry);
+            if (canonicalMove == TranspositionTable.NO_MOVE || canonicalMove >= geometry.getCellCount()) {
+                break;
+            }
+            cell = geometry.getInverseSymmetryCell(symmetry, canonicalMove);
+            if (((ownMask | otherMask) & (1L << cell)) != 0) {
+                break; // A colliding entry of another position
+            }
+        }
+        return length;
+    }
+
+    private void resetSearchState(BoardGeometry geometry, int stones) {
+        nodes = 0;
+        uncheckedNodes = 0;
+        aborted = false;
+        tableHits = 0;
+        tableMisses = 0;
+        tableStores = 0;
+        cutoffs = 0;
+        maxDepthReached = 0;
+
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = TranspositionTable.NO_MOVE;
+            plyKillers[1] = TranspositionTable.NO_MOVE;
+        }
+        // Fewer stones than last time, or another board, means a new game or an undo
+        if (geometry != historyGeometry || stones < historyStones) {
+            Arrays.fill(history, 0);
+            historyGeometry = geometry;
+        }
+        historyStones = stones;
+    }
+
+    /**
+     * Adds nodes to the shared count and checks the coordinator's limits.
+     *
+     * @return True if the search has to stop.
+     */
+    private boolean checkLimits(int newNodes) {
+        long total = sharedNodes.addAndGet(newNodes);
+        if (cancellation.isCancelled()
+                || limitsActive && (total >= nodeLimit || System.nanoTime() >= deadlineNanos)) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    /**
+     * Searches every root move to the given depth. Moves in preferredMoves (the best moves of
+     * the previous iteration) go first, as they are the most likely to stay best.
+     */
+    private long searchRoot(BoardGeometry geometry, long ownMask, long otherMask, int depth, int alpha, int beta, long preferredMoves) {
+        long emptyMask = ~(ownMask | otherMask) & geometry.getFullMask();
+        int best = -INFINITY;
+        long bestMoves = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            long remaining = pass == 0 ? emptyMask & preferredMoves : emptyMask & ~preferredMoves;
+            for (; remaining != 0; remaining &= remaining - 1) {
+                long bit = remaining & -remaining;
+                // Searching just below the best score keeps ties exact, so every equal-best move is found
+                int lower = exactRoot ? alpha : Math.max(alpha, best - 1);
+                int score = -minimax(geometry, otherMask, ownMask | bit, 0, depth - 1, -beta, -lower);
+                if (aborted) {
+                    return 0;
+                }
+                iterationValues[Long.numberOfTrailingZeros(bit)] = score;
+
+                if (score > best) {
+                    best = score;
+                    bestMoves = bit; // Clear previous best moves, as a new best found
+                } else if (score == best) {
+                    bestMoves |= bit; // Add to equally optimal moves
+                }
+                if (best >= beta) {
+                    rootScore = best; // Fail high: the caller widens the window and searches again
+                    return bestMoves;
+                }
+            }
+        }
+        rootScore = best;
+        return bestMoves;
+    }
+
+    /**
+     * Parallel version of searchRoot. Helpers narrow their windows to just below the best score
+     * any of them has found, like searchRoot does, so every move that ties the final best score
+     * still gets an exact score whichever helper searched it and when.
+     */
+    private long searchRootParallel(BoardGeometry geometry, long ownMask, long otherMask, int depth, int alpha, int beta, long preferredMoves) {
+        long emptyMask = ~(ownMask | otherMask) & geometry.getFullMask();
+        int count = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            long remaining = pass == 0 ? emptyMask & preferredMoves : emptyMask & ~preferredMoves;
+            for (; remaining != 0; remaining &= remaining - 1) {
+                rootScores[count] = -INFINITY; // Moves skipped after a fail high keep this
+                rootCells[count++] = Long.numberOfTrailingZeros(remaining);
+            }
+        }
+        rootMoveCount = count;
+        rootGeometry = geometry;
+        rootOwnMask = ownMask;
+        rootOtherMask = otherMask;
+        rootDraft = depth - 1;
+        rootAlpha = alpha;
+        rootBeta = beta;
+        nextRootMove.set(0);
+        rootBest.set(-INFINITY);
+
+        // Each helper keeps taking the next unsearched root move, so none idles while work is left
+        for (ForkJoinTask<?> task : helperTasks) {
+            task.reinitialize();
+            pool.execute(task);
+        }
+        for (ForkJoinTask<?> task : helperTasks) {
+            task.join();
+        }
+        if (stopped) {
+            return 0;
+        }
+
+        int best = -INFINITY;
+        long bestMoves = 0;
+        for (int i = 0; i < count; i++) {
+            long bit = 1L << rootCells[i];
+            iterationValues[rootCells[i]] = rootScores[i];
+            if (rootScores[i] > best) {
+                best = rootScores[i];
+                bestMoves = bit;
+            } else if (rootScores[i] == best) {
+                bestMoves |= bit;
+            }
+        }
+        rootScore = best;
+        return bestMoves;
+    }
+
+    /**
+     * Helper side of searchRootParallel: searches root moves until none are left.
+     */
+    private void searchRootMoves() {
+        SearchEngine root = coordinator;
+        int index;
+        // After a fail high the caller searches again with a wider window, so the rest can be skipped
+        while (!aborted && root.rootBest.get() < root.rootBeta
+                && (index = root.nextRootMove.getAndIncrement()) < root.rootMoveCount) {
+            long bit = 1L << root.rootCells[index];
+            int lower = root.exactRoot ? root.rootAlpha : Math.max(root.rootAlpha, root.rootBest.get() - 1);
+            int score = -minimax(root.rootGeometry, root.rootOtherMask, root.rootOwnMask | bit,
+                    0, root.rootDraft, -root.rootBeta, -lower);
+            if (!aborted) {
+                root.rootScores[index] = score;
+                root.rootBest.accumulateAndGet(score, Math::max);
+            }
+        }
+    }
+
+    /**
+     * Minimax algorithm with Alpha-Beta Pruning, written in negamax form over bitboards.
+     * Scores are always from the point of view of the player to move, so a win for the
+     * player who just moved is a loss here. Nothing is allocated during the search.
+     * Results are memoized in the transposition table under the position's canonical form,
+     * so transpositions and symmetric positions are searched only once.
+     *
+     * @param geometry The board size and win length.
+     * @param ownMask Cells held by the player to move.
+     * @param otherMask Cells held by the player who just moved.
+     * @param depth The current depth of recursion.
+     * @param draft How many more plies to search before evaluating heuristically.
+     * @param alpha Alpha value for alpha-beta pruning.
+     * @param beta Beta value for alpha-beta pruning.
+     * @return The optimal score for the player to move, or 0 if the search was aborted.
+     */
+    int minimax(BoardGeometry geometry, long ownMask, long otherMask, int depth, int draft, int alpha, int beta) {
+        nodes++;
+        if (++uncheckedNodes == LIMIT_CHECK_INTERVAL) {
+            uncheckedNodes = 0;
+            aborted = coordinator.checkLimits(LIMIT_CHECK_INTERVAL);
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (depth >= maxDepthReached) {
+            maxDepthReached = depth + 1; // Depth counts from the root's moves, which are ply 1
+        }
+
+        if (geometry.isWin(otherMask)) {
+            return depth - WIN_SCORE; // Player who just moved has won
+        }
+
+        long occupied = ownMask | otherMask;
+        if (occupied == geometry.getFullMask()) {
+            return 0; // Tie
+        }
+        if (draft <= 0) {
+            return evaluate(geometry, ownMask, otherMask);
+        }
+
+        int symmetry = geometry.canonicalSymmetry(ownMask, otherMask);
+        long key = geometry.positionKey(geometry.transform(ownMask, symmetry), geometry.transform(otherMask, symmetry));
+        int originalAlpha = alpha;
+        int tableMove = TranspositionTable.NO_MOVE;
+
+        long entry = table.probe(key);
+        if (entry != 0) {
+            tableHits++;
+            // Only entries of the same draft are used for scores, so results do not depend on
+            // what earlier iterations or other threads happened to store
+            if (TranspositionTable.draft(entry) == draft) {
+                int tableValue = fromTableValue(TranspositionTable.value(entry), depth);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT) {
+                    return tableValue;
+                } else if (bound == TranspositionTable.LOWER_BOUND) {
+                    alpha = Math.max(alpha, tableValue);
+                } else {
+                    beta = Math.min(beta, tableValue);
+                }
+                if (beta <= alpha) {
+                    return tableValue;
+                }
+            }
+            int canonicalMove = TranspositionTable.move(entry);
+            if (canonicalMove != TranspositionTable.NO_MOVE && canonicalMove < geometry.getCellCount()) {
+                tableMove = geometry.getInverseSymmetryCell(symmetry, canonicalMove);
+                if ((occupied & (1L << tableMove)) != 0) {
+                    tableMove = TranspositionTable.NO_MOVE;
+                }
+            }
+        } else {
+            tableMisses++;
+        }
+
+        // The move from the table (if any) is searched first, then the rest best-scored first
+        int[] moves = moveLists[depth];
+        int[] scores = moveScores[depth];
+        int count = scoreMoves(geometry, ownMask, otherMask, depth, tableMove, moves, scores);
+        int next = 0;
+        int cell = tableMove != TranspositionTable.NO_MOVE ? tableMove : pickMove(moves, scores, next++, count);
+
+        int bestEval = -INFINITY;
+        int bestCell = cell;
+        while (true) {
+            int eval = -minimax(geometry, otherMask, ownMask | (1L << cell), depth + 1, draft - 1, -beta, -alpha);
+            if (aborted) {
+                return 0; // Partial results must not reach the table
+            }
+            if (eval > bestEval) {
+                bestEval = eval;
+                bestCell = cell;
+            }
+            alpha = Math.max(alpha, eval);
+            if (beta <= alpha) {
+                cutoffs++;
+                recordCutoff(cell, depth, draft);
+                break;
+            }
+            if (next == count) {
+                break; // No moves left
+            }
+            cell = pickMove(moves, scores, next++, count);
+        }
+
+        int bound;
+        if (bestEval <= originalAlpha) {
+            bound = TranspositionTable.UPPER_BOUND;
+        } else if (bestEval >= beta) {
+            bound = TranspositionTable.LOWER_BOUND;
+        } else {
+            bound = TranspositionTable.EXACT;
+        }
+        table.store(key, toTableValue(bestEval, depth), bound, geometry.getSymmetryCell(symmetry, bestCell), draft);
+        tableStores++;
+        return bestEval;
+    }
+
+    /**
+     * Lists the empty cells except the table move, with their ordering scores.
+     *
+     * @return The number of moves listed.
+     */
+    private int scoreMoves(BoardGeometry geometry, long ownMask, long otherMask, int depth, int tableMove, int[] moves, int[] scores) {
+        long emptyMask = ~(ownMask | otherMask) & geometry.getFullMask();
+        long wins = 0;
+        long blocks = 0;
+        int killer0 = TranspositionTable.NO_MOVE;
+        int killer1 = TranspositionTable.NO_MOVE;
+        if (moveOrdering) {
+            wins = completingCells(geometry, ownMask, otherMask);
+            blocks = completingCells(geometry, otherMask, ownMask);
+            killer0 = killers[depth][0];
+            killer1 = killers[depth][1];
+        }
+
+        int count = 0;
+        for (long remaining = emptyMask; remaining != 0; remaining &= remaining - 1) {
+            int cell = Long.numberOfTrailingZeros(remaining);
+            if (cell == tableMove) {
+                continue;
+            }
+            long bit = 1L << cell;
+            int score = 0;
+            if ((wins & bit) != 0) {
+                score = WIN_ORDER;
+            } else if ((blocks & bit) != 0) {
+                score = BLOCK_ORDER;
+            } else if (cell == killer0) {
+                score = KILLER_ORDER;
+            } else if (cell == killer1) {
+                score = KILLER_ORDER - 1;
+            } else if (moveOrdering) {
+                // Cells on more lines (the centre, and the corners of 3x3) break ties in the history
+                score = history[cell] + geometry.getLinesThroughCell(cell).length;
+            }
+            moves[count] = cell;
+            scores[count++] = score;
+        }
+        return count;
+    }
+
+    /**
+     * Moves the best-scored of the moves from index 'from' on to 'from' and returns it. Picking
+     * one move at a time costs nothing for the moves a cut-off makes unnecessary.
+     * When all scores are equal the moves stay in cell order.
+     */
+    private static int pickMove(int[] moves, int[] scores, int from, int count) {
+        int best = from;
+        for (int i = from + 1; i < count; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int cell = moves[best];
+        int score = scores[best];
+        moves[best] = moves[from];
+        scores[best] = scores[from];
+        moves[from] = cell;
+        scores[from] = score;
+        return cell;
+    }
+
+    /**
+     * Remembers a move that caused a cut-off as a killer for its ply and in the history.
+     */
+    private void recordCutoff(int cell, int depth, int draft) {
+        if (!moveOrdering) {
+            return;
+        }
+        int[] plyKillers = killers[depth];
+        if (plyKillers[0] != cell) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = cell;
+        }
+        history[cell] += draft * draft;
+        if (history[cell] >= HISTORY_LIMIT) {
+            for (int i = 0; i < history.length; i++) {
+                history[i] >>= 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the empty cells that would complete a line for the owner of mask: lines with all
+     * but one cell taken by mask and none by blockers.
+     */
+    static long completingCells(BoardGeometry geometry, long mask, long blockers) {
+        int needed = geometry.getWinLength() - 1;
+        long cells = 0;
+        for (int line = 0; line < geometry.getLineCount(); line++) {
+            long lineMask = geometry.getLineMask(line);
+            if ((blockers & lineMask) == 0 && Long.bitCount(mask & lineMask) == needed) {
+                cells |= lineMask & ~mask;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Heuristic score of a position that is not searched any deeper, for the player to move.
+     * Every line that only one player occupies counts for that player, more the fuller it is.
+     */
+    static int evaluate(BoardGeometry geometry, long ownMask, long otherMask) {
+        int score = 0;
+        for (int line = 0; line < geometry.getLineCount(); line++) {
+            long lineMask = geometry.getLineMask(line);
+            int ownCount = Long.bitCount(ownMask & lineMask);
+            int otherCount = Long.bitCount(otherMask & lineMask);
+            if (otherCount == 0) {
+                score += LINE_WEIGHTS[ownCount];
+            } else if (ownCount == 0) {
+                score -= LINE_WEIGHTS[otherCount];
+            }
+        }
+        // Stay clear of the range used for forced wins and losses
+        return Math.max(-WIN_THRESHOLD, Math.min(WIN_THRESHOLD, score));
+    }
+
+    /**
+     * Converts a score at the given depth into one measured from the stored position itself,
+     * so the same entry can be reused at any depth. Only forced results depend on the depth.
+     */
+    private static int toTableValue(int score, int depth) {
+        if (score > WIN_THRESHOLD) {
+            return score + depth;
+        } else if (score < -WIN_THRESHOLD) {
+            return score - depth;
+        }
+        return score;
+    }
+
+    private static int fromTableValue(int value, int depth) {
+        if (value > WIN_THRESHOLD) {
+            return value - depth;
+        } else if (value < -WIN_THRESHOLD) {
+            return value + depth;
+        }
+        return value;
+    }
+}
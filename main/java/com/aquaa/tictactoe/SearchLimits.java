@@ -0,0 +1,68 @@
+package com.aquaa.tictactoe;
+
+/**
+ * Budget for one AI search: a time limit, a node limit, a depth limit, or a mix of them.
+ * The search deepens one ply at a time and stops as soon as any limit runs out,
+ * returning the best move of the last depth it finished.
+ */
+public final class SearchLimits {
+
+    /** No limits: the search runs until it has looked at the whole game tree. */
+    public static final SearchLimits UNLIMITED = new SearchLimits(0, 0, 0);
+
+    private final long timeMillis;
+    private final long nodeLimit;
+    private final int maxDepth;
+
+    private SearchLimits(long timeMillis, long nodeLimit, int maxDepth) {
+        this.timeMillis = timeMillis;
+        this.nodeLimit = nodeLimit;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Limits the search to the given wall time per move.
+     */
+    public static SearchLimits time(long millis) {
+        return new SearchLimits(millis, 0, 0);
+    }
+
+    /**
+     * Limits the search to the given number of visited positions per move.
+     */
+    public static SearchLimits nodes(long nodeLimit) {
+        return new SearchLimits(0, nodeLimit, 0);
+    }
+
+    /**
+     * Limits the search to the given number of plies. Unlike time and node limits this gives
+     * the same result on every run, whatever the machine or the number of search threads.
+     */
+    public static SearchLimits depth(int maxDepth) {
+        return new SearchLimits(0, 0, maxDepth);
+    }
+
+    /**
+     * Limits the search by both wall time and visited positions, whichever runs out first.
+     * A value of 0 means no limit of that kind.
+     */
+    public static SearchLimits of(long timeMillis, long nodeLimit) {
+        return new SearchLimits(timeMillis, nodeLimit, 0);
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public long getNodeLimit() {
+        return nodeLimit;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public boolean isUnlimited() {
+        return timeMillis <= 0 && nodeLimit <= 0 && maxDepth <= 0;
+    }
+}
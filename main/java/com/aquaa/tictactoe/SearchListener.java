@@ -0,0 +1,12 @@
+package com.aquaa.tictactoe;
+
+/**
+ * Receives the statistics of every AI move, see AILogic.setSearchListener.
+ */
+public interface SearchListener {
+
+    /**
+     * Called on the thread that computed the move, right after it was chosen.
+     */
+    void onSearchFinished(SearchStats stats);
+}
@@ -0,0 +1,114 @@
+package com.aquaa.tictactoe;
+
+/**
+ * What one AI move cost and what the AI expects to happen next.
+ * Moves that were not searched (EASY, AVERAGE, and 3x3 positions answered by the perfect-play
+ * table) report no nodes and no transposition table use. Replies found by pondering report no
+ * time either, as their search ran before the move was requested.
+ */
+public final class SearchStats {
+
+    private final AILogic.Difficulty difficulty;
+    private final boolean searched;
+    private final long nodes;
+    private final long cutoffs;
+    private final int maxDepth;
+    private final int completedDepth;
+    private final long tableHits;
+    private final long wallTimeNanos;
+    private final int score;
+    private final int[][] principalVariation;
+
+    SearchStats(AILogic.Difficulty difficulty, boolean searched, long nodes, long cutoffs, int maxDepth, int completedDepth,
+                long tableHits, long wallTimeNanos, int score, int[][] principalVariation) {
+        this.difficulty = difficulty;
+        this.searched = searched;
+        this.nodes = nodes;
+        this.cutoffs = cutoffs;
+        this.maxDepth = maxDepth;
+        this.completedDepth = completedDepth;
+        this.tableHits = tableHits;
+        this.wallTimeNanos = wallTimeNanos;
+        this.score = score;
+        this.principalVariation = principalVariation;
+    }
+
+    public AILogic.Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * Returns true if the move came from the minimax search.
+     */
+    public boolean isSearched() {
+        return searched;
+    }
+
+    /**
+     * Number of positions visited, over all search threads.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Number of alpha-beta cut-offs, i.e. positions where the remaining moves were skipped.
+     */
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * Deepest ply any line of the search reached.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Depth of the last iteration that finished, which the move is based on.
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Transposition table hits, or -1 if the move was not searched and no table was used.
+     */
+    public long getTableHits() {
+        return tableHits;
+    }
+
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    /**
+     * Score of the move for the AI: 1,000,000 minus the plies to the win for a forced win, the
+     * negative of that for a forced loss, 0 for a forced draw, and a heuristic estimate (far
+     * from those bounds) if the search did not reach the end of the game.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * The move played followed by the replies the AI expects, each as {row, column}.
+     * Empty if no move was made.
+     */
+    public int[][] getPrincipalVariation() {
+        return principalVariation;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        for (int[] move : principalVariation) {
+            line.append(line.length() == 0 ? "" : " ").append(move[0]).append(',').append(move[1]);
+        }
+        return difficulty + (searched ? " searched" : " not searched")
+                + ": " + nodes + " nodes, " + cutoffs + " cutoffs, depth " + completedDepth + "/" + maxDepth
+                + ", " + tableHits + " table hits, " + wallTimeNanos / 1000 + " us, score " + score
+                + ", pv [" + line + "]";
+    }
+}
@@ -32,8 +32,8 @@ public class SettingsActivity extends AppCompatActivity {
             // Set up AI Difficulty preference
             ListPreference difficultyPreference = findPreference("ai_difficulty");
             if (difficultyPreference != null) {
-                difficultyPreference.setEntries(new CharSequence[]{"Easy", "Medium", "Hard"});
-                difficultyPreference.setEntryValues(new CharSequence[]{"Easy", "Medium", "Hard"});
+                difficultyPreference.setEntries(new CharSequence[]{"Easy", "Medium", "Advanced", "Hard", "Monte Carlo"});
+                difficultyPreference.setEntryValues(new CharSequence[]{"Easy", "Medium", "Advanced", "Hard", "Monte Carlo"});
                 // Set default value if not already set
                 if (difficultyPreference.getValue() == null) {
                     difficultyPreference.setValue("Medium");
@@ -0,0 +1,42 @@
+package com.aquaa.tictactoe;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Times the steps of an activity's start-up, so changes to it can be measured, e.g. in the log
+ * or under Robolectric. Every step is timed from the creation of the timer.
+ */
+public final class StartupTimer {
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> steps = new LinkedHashMap<>();
+
+    /**
+     * Records that the step finished now. Only the first time a step finishes counts.
+     */
+    public synchronized void mark(String step) {
+        if (!steps.containsKey(step)) {
+            steps.put(step, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Returns the time from the creation of the timer to the end of the step, or -1 if the step
+     * has not finished.
+     */
+    public synchronized long getNanos(String step) {
+        Long nanos = steps.get(step);
+        return nanos != null ? nanos : -1;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Long> step : steps.entrySet()) {
+            text.append(text.length() == 0 ? "" : ", ").append(step.getKey()).append(' ')
+                    .append(step.getValue() / 100_000 / 10.0).append(" ms");
+        }
+        return text.toString();
+    }
+}
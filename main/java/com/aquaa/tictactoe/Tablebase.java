@@ -0,0 +1,224 @@
+package com.aquaa.tictactoe;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The solved value of every legal position of a small board (up to 16 cells, e.g. 4x4), so the
+ * DIFFICULT AI can play perfectly there without a search. Built offline by TablebaseGenerator
+ * and memory-mapped, so lookups read a few bytes of the file and hardly touch the heap.
+ *
+ * Positions are relative to the player to move, who has half the stones (rounded down) of a
+ * legal position. Each position has a dense index (see index): positions are grouped by stone
+ * count; within a group, the occupied cells and then the mover's cells among them are ranked
+ * in the combinatorial number system. Every index is a legal stone count, so the file has no gaps.
+ *
+ * File layout, big-endian: a header of magic, version, rows, columns, win length, bits per
+ * position and position count (ints), then 4 bits per position, the even index in the low
+ * half of each byte. A value is 0 for a draw, 1 to 8 for a win in 1, 3, .. 15 plies and 9 to
+ * 15 for a loss in 2, 4, .. 14 plies, with best play from both sides; positions where the game
+ * is already over are stored as 0 and never read.
+ */
+public final class Tablebase {
+
+    static final int MAGIC = 0x54545442; // "TTTB"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 28;
+    static final int BITS_PER_POSITION = 4;
+    static final int MAX_CELLS = 16;
+
+    // Largest value of a win, i.e. a win in 15 plies; larger values are losses
+    static final int MAX_WIN_VALUE = 8;
+    static final int MAX_VALUE = 15;
+
+    // BINOMIAL[n][k] = n choose k
+    private static final long[][] BINOMIAL = new long[MAX_CELLS + 1][MAX_CELLS + 1];
+
+    static {
+        for (int n = 0; n <= MAX_CELLS; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= n; k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final BoardGeometry geometry;
+    private final long[] groupOffsets;
+
+    private Tablebase(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getInt(20) != BITS_PER_POSITION) {
+            throw new IOException("Not a tablebase");
+        }
+        int rows = buffer.getInt(8);
+        int columns = buffer.getInt(12);
+        int winLength = buffer.getInt(16);
+        if (rows < 1 || columns < 1 || rows * columns > MAX_CELLS) {
+            throw new IOException("Tablebase board " + rows + "x" + columns + " is not supported");
+        }
+        try {
+            geometry = BoardGeometry.of(rows, columns, winLength);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Tablebase board is not valid", e);
+        }
+        groupOffsets = groupOffsets(geometry.getCellCount());
+        long count = groupOffsets[geometry.getCellCount() + 1];
+        if (buffer.getInt(24) != count || (count + 1) / 2 > buffer.limit() - HEADER_BYTES) {
+            throw new IOException("Tablebase is truncated");
+        }
+        this.buffer = buffer;
+    }
+
+    /**
+     * Maps a tablebase file into memory; pages are only read when a lookup touches them.
+     */
+    public static Tablebase map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return map(channel, 0, channel.size());
+        }
+    }
+
+    /**
+     * Maps a tablebase stored at the given range of a file, e.g. an uncompressed app asset
+     * opened with AssetManager.openFd.
+     */
+    public static Tablebase map(FileChannel channel, long offset, long length) throws IOException {
+        return new Tablebase(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+    }
+
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Returns the number of positions stored.
+     */
+    public long getPositionCount() {
+        return groupOffsets[geometry.getCellCount() + 1];
+    }
+
+    /**
+     * Returns true if the position can be looked up: the player owning ownMask is to move in
+     * a legal position that is not over yet.
+     */
+    boolean contains(long ownMask, long otherMask) {
+        int own = Long.bitCount(ownMask);
+        int other = Long.bitCount(otherMask);
+        return (ownMask & otherMask) == 0 && (own == other || own + 1 == other)
+                && (ownMask | otherMask) != geometry.getFullMask()
+                && !geometry.isWin(ownMask) && !geometry.isWin(otherMask);
+    }
+
+    /**
+     * Returns the stored value of a position, see the class comment.
+     * Only meaningful for positions the table contains.
+     */
+    int getValue(long ownMask, long otherMask) {
+        long index = index(geometry.getCellCount(), groupOffsets, ownMask, otherMask);
+        int packed = buffer.get(HEADER_BYTES + (int) (index >>> 1));
+        return (index & 1) == 0 ? packed & 0xF : packed >>> 4 & 0xF;
+    }
+
+    /**
+     * Returns the minimax score of the position for the player owning ownMask, on the scale of
+     * the search: 1,000,000 minus the plies to a win after the first move, its negative for a
+     * loss, 0 for a draw.
+     */
+    int getScore(long ownMask, long otherMask) {
+        int plies = plies(getValue(ownMask, otherMask));
+        return plies > 0 ? SearchEngine.WIN_SCORE - (plies - 1) : plies < 0 ? -SearchEngine.WIN_SCORE - (plies + 1) : 0;
+    }
+
+    /**
+     * Returns the mask of optimal moves for the player owning ownMask: the quickest win, else
+     * a draw, else the slowest loss. Looks up every move's position once.
+     *
+     * @return The moves, or 0 if the table does not contain the position.
+     */
+    long getBestMoves(long ownMask, long otherMask) {
+        if (!contains(ownMask, otherMask)) {
+            return 0;
+        }
+        long empty = ~(ownMask | otherMask) & geometry.getFullMask();
+        long wins = SearchEngine.completingCells(geometry, ownMask, otherMask);
+        if (wins != 0) {
+            return wins;
+        }
+        long bestMoves = 0;
+        int best = Integer.MIN_VALUE;
+        for (long rest = empty; rest != 0; rest &= rest - 1) {
+            long bit = rest & -rest;
+            long moved = ownMask | bit;
+            // A full board is a draw; otherwise the reply's value, negated and one ply longer
+            int plies = (moved | otherMask) == geometry.getFullMask() ? 0 : -plies(getValue(otherMask, moved));
+            int rating = plies > 0 ? 100 - plies : plies < 0 ? -100 - plies : 0;
+            if (rating > best) {
+                best = rating;
+                bestMoves = bit;
+            } else if (rating == best) {
+                bestMoves |= bit;
+            }
+        }
+        return bestMoves;
+    }
+
+    /**
+     * Decodes a stored value into plies: positive for a win, negative for a loss, 0 for a draw.
+     */
+    static int plies(int value) {
+        return value == 0 ? 0 : value <= MAX_WIN_VALUE ? 2 * value - 1 : -2 * (value - MAX_WIN_VALUE);
+    }
+
+    /**
+     * Encodes plies as returned by plies(int).
+     *
+     * @throws IllegalArgumentException If the plies do not fit the 4-bit values.
+     */
+    static int value(int plies) {
+        if (plies > 0 && plies % 2 == 1 && plies <= 2 * MAX_WIN_VALUE - 1) {
+            return (plies + 1) / 2;
+        } else if (plies < 0 && plies % 2 == 0 && -plies / 2 + MAX_WIN_VALUE <= MAX_VALUE) {
+            return -plies / 2 + MAX_WIN_VALUE;
+        } else if (plies == 0) {
+            return 0;
+        }
+        throw new IllegalArgumentException("No value for a result in " + plies + " plies");
+    }
+
+    /**
+     * Returns the first index of every stone count, and the total count at index cells + 1.
+     */
+    static long[] groupOffsets(int cells) {
+        long[] offsets = new long[cells + 2];
+        for (int stones = 0; stones <= cells; stones++) {
+            offsets[stones + 1] = offsets[stones] + BINOMIAL[cells][stones] * BINOMIAL[stones][stones / 2];
+        }
+        return offsets;
+    }
+
+    /**
+     * Returns the index of a legal position with the player owning ownMask to move.
+     */
+    static long index(int cells, long[] groupOffsets, long ownMask, long otherMask) {
+        long occupied = ownMask | otherMask;
+        int stones = Long.bitCount(occupied);
+        long occupiedRank = 0;
+        long ownRank = 0;
+        int seen = 0;
+        int ownSeen = 0;
+        for (long rest = occupied; rest != 0; rest &= rest - 1) {
+            int cell = Long.numberOfTrailingZeros(rest);
+            occupiedRank += BINOMIAL[cell][++seen];
+            if ((ownMask & 1L << cell) != 0) {
+                ownRank += BINOMIAL[seen - 1][++ownSeen];
+            }
+        }
+        return groupOffsets[stones] + occupiedRank * BINOMIAL[stones][stones / 2] + ownRank;
+    }
+}
@@ -0,0 +1,141 @@
+package com.aquaa.tictactoe;
+
+import java.util.Arrays;
+
+/**
+ * Finds the tactical squares of a position in one pass over the board's lines, without
+ * placing any trial marks.
+ *
+ * For the player to move ("own") and the opponent it reports, as masks of cells
+ * (bit row * columns + column):
+ * <ul>
+ *   <li>wins: cells that complete an own line now;</li>
+ *   <li>blocks: cells that would complete an opponent line, i.e. must be taken;</li>
+ *   <li>forks: cells that give the player two ways to win at once;</li>
+ *   <li>opponent forks: the same for the opponent, i.e. cells to deny;</li>
+ *   <li>counter-forks: cells that make an own threat whose forced answer is not an
+ *       opponent fork, so the opponent has to give up on forking to block it.</li>
+ * </ul>
+ * A line counts as a threat when it holds all but one, or for forks all but two, of its
+ * cells for one player and none for the other.
+ *
+ * An analyzer keeps the results of its last analysis and can be reused.
+ */
+public final class ThreatAnalyzer {
+
+    private long wins;
+    private long blocks;
+    private long forks;
+    private long opponentForks;
+    private long counterForks;
+
+    // Empty cells of the own lines that are two marks short, kept for the counter-fork check
+    private long[] ownOpenPairs = new long[16];
+    // Per cell, the first open pair seen through it; only read for cells seen in this analysis
+    private final long[] ownFirstPair = new long[BoardGeometry.MAX_CELLS];
+    private final long[] otherFirstPair = new long[BoardGeometry.MAX_CELLS];
+
+    /**
+     * Analyzes the board for player, who is to move.
+     *
+     * @return This analyzer, holding the results.
+     */
+    public ThreatAnalyzer analyze(String[][] board, BoardGeometry geometry, String player, String opponent) {
+        return analyze(geometry, geometry.fromBoard(board, player), geometry.fromBoard(board, opponent));
+    }
+
+    /**
+     * Analyzes the position for the player owning ownMask, who is to move.
+     */
+    ThreatAnalyzer analyze(BoardGeometry geometry, long ownMask, long otherMask) {
+        int winLength = geometry.getWinLength();
+        long occupied = ownMask | otherMask;
+        wins = 0;
+        blocks = 0;
+        forks = 0;
+        opponentForks = 0;
+        counterForks = 0;
+
+        // Cells seen in an open pair so far; a second, different pair through a cell makes it a fork
+        long ownPairCells = 0;
+        long otherPairCells = 0;
+        int pairCount = 0;
+        for (int line = 0; line < geometry.getLineCount(); line++) {
+            long lineMask = geometry.getLineMask(line);
+            int own = Long.bitCount(ownMask & lineMask);
+            int other = Long.bitCount(otherMask & lineMask);
+            long empty = lineMask & ~occupied;
+            if (other == 0) {
+                if (own == winLength - 1) {
+                    wins |= empty;
+                } else if (own == winLength - 2) {
+                    forks |= pairForks(empty, ownPairCells, ownFirstPair);
+                    ownPairCells |= empty;
+                    if (pairCount == ownOpenPairs.length) {
+                        ownOpenPairs = Arrays.copyOf(ownOpenPairs, pairCount * 2);
+                    }
+                    ownOpenPairs[pairCount++] = empty;
+                }
+            }
+            if (own == 0) {
+                if (other == winLength - 1) {
+                    blocks |= empty;
+                } else if (other == winLength - 2) {
+                    opponentForks |= pairForks(empty, otherPairCells, otherFirstPair);
+                    otherPairCells |= empty;
+                }
+            }
+        }
+
+        // Playing one cell of an open pair threatens a win at the other, which the opponent must block
+        for (int i = 0; i < pairCount; i++) {
+            long pair = ownOpenPairs[i];
+            long first = Long.lowestOneBit(pair);
+            long second = pair & ~first;
+            if ((second & opponentForks) == 0) {
+                counterForks |= first;
+            }
+            if ((first & opponentForks) == 0) {
+                counterForks |= second;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Records an open pair and returns its cells that already had a different pair through
+     * them. Overlapping windows of one row can give the same pair twice, which is no fork.
+     */
+    private static long pairForks(long pair, long seenCells, long[] firstPair) {
+        long forks = 0;
+        for (long rest = pair; rest != 0; rest &= rest - 1) {
+            int cell = Long.numberOfTrailingZeros(rest);
+            if ((seenCells & 1L << cell) == 0) {
+                firstPair[cell] = pair;
+            } else if (firstPair[cell] != pair) {
+                forks |= 1L << cell;
+            }
+        }
+        return forks;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public long getBlocks() {
+        return blocks;
+    }
+
+    public long getForks() {
+        return forks;
+    }
+
+    public long getOpponentForks() {
+        return opponentForks;
+    }
+
+    public long getCounterForks() {
+        return counterForks;
+    }
+}
@@ -0,0 +1,131 @@
+package com.aquaa.tictactoe;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size transposition table for the minimax search.
+ * Positions are stored under their canonical key, so rotations and reflections of a position
+ * share one entry. Each entry packs a score, a bound type, the search draft and the best move
+ * (in canonical orientation) into a single long. Hit, miss and store counters are kept for
+ * measurement; they are totals over every search that used the table.
+ *
+ * The table is lock-free and may be shared by several search threads. Each slot stores the key
+ * XORed with the entry, so a slot torn by two concurrent writers fails the key check and reads
+ * as a miss instead of returning a mixed-up entry.
+ */
+public final class TranspositionTable {
+
+    static final int EXACT = 0;
+    static final int LOWER_BOUND = 1;
+    static final int UPPER_BOUND = 2;
+    static final int NO_MOVE = -1;
+
+    // Entry layout: bits 0-31 score, 32-33 bound type, 34-40 move + 1, 41-47 draft, bit 48 valid
+    private static final long VALID = 1L << 48;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int indexShift;
+
+    // Searches count locally and add their totals here when they finish
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+
+    /**
+     * @param sizeBits The table holds 2^sizeBits entries.
+     */
+    TranspositionTable(int sizeBits) {
+        keys = new long[1 << sizeBits];
+        entries = new long[1 << sizeBits];
+        indexShift = 64 - sizeBits;
+    }
+
+    /**
+     * Looks up a canonical position key.
+     *
+     * @return The packed entry, or 0 if the key is not stored.
+     */
+    long probe(long key) {
+        int index = index(key);
+        long entry = entries[index];
+        if (entry != 0 && (keys[index] ^ entry) == key) {
+            return entry;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a result for a canonical position key, replacing whatever was in its slot.
+     *
+     * @param value The score, already made independent of the search depth.
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND.
+     * @param move The best move in canonical orientation, or NO_MOVE.
+     * @param draft How many plies below the position were searched.
+     */
+    void store(long key, int value, int bound, int move, int draft) {
+        int index = index(key);
+        long entry = (value & 0xFFFFFFFFL) | (long) bound << 32 | (long) (move + 1) << 34
+                | (long) draft << 41 | VALID;
+        keys[index] = key ^ entry;
+        entries[index] = entry;
+    }
+
+    static int value(long entry) {
+        return (int) entry;
+    }
+
+    static int bound(long entry) {
+        return (int) (entry >>> 32) & 0x3;
+    }
+
+    static int move(long entry) {
+        return ((int) (entry >>> 34) & 0x7F) - 1;
+    }
+
+    static int draft(long entry) {
+        return (int) (entry >>> 41) & 0x7F;
+    }
+
+    /**
+     * Removes all entries. Counters are left untouched.
+     */
+    public void clear() {
+        Arrays.fill(entries, 0L);
+    }
+
+    /**
+     * Adds the probe and store counts of a finished search to the counters.
+     */
+    void addCounters(long searchHits, long searchMisses, long searchStores) {
+        hits.addAndGet(searchHits);
+        misses.addAndGet(searchMisses);
+        stores.addAndGet(searchStores);
+    }
+
+    /**
+     * Sets the counters to zero. Searches running meanwhile still add their counts when they end.
+     */
+    public void resetCounters() {
+        hits.set(0);
+        misses.set(0);
+        stores.set(0);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getStores() {
+        return stores.get();
+    }
+
+    private int index(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> indexShift);
+    }
+}
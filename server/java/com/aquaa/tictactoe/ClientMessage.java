@@ -0,0 +1,28 @@
+package com.aquaa.tictactoe;
+
+/**
+ * A message from a player to their GameSession. Cells are numbered row * columns + column.
+ */
+public record ClientMessage(Type type, String board, AILogic.Difficulty difficulty, boolean userFirst, int cell) {
+
+    public enum Type {
+        NEW_GAME, MOVE, QUIT
+    }
+
+    /**
+     * Starts a new game, abandoning the current one.
+     *
+     * @param board Board size and win length, see BoardGeometry.parse, e.g. "3x3" or "5x5k4".
+     */
+    public static ClientMessage newGame(String board, AILogic.Difficulty difficulty, boolean userFirst) {
+        return new ClientMessage(Type.NEW_GAME, board, difficulty, userFirst, -1);
+    }
+
+    public static ClientMessage move(int cell) {
+        return new ClientMessage(Type.MOVE, null, null, false, cell);
+    }
+
+    public static ClientMessage quit() {
+        return new ClientMessage(Type.QUIT, null, null, false, -1);
+    }
+}
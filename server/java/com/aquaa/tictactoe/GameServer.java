@@ -0,0 +1,143 @@
+package com.aquaa.tictactoe;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hosts many players' games against the AI without a UI, e.g. behind a network front end.
+ *
+ * Every player gets a GameSession running on a virtual thread of its own, so thousands of
+ * mostly idle sessions cost little. The AI's searches all run on one pool of platform threads,
+ * one per CPU by default: searches are CPU-bound, so more threads would only make each move
+ * slower, and each search thread keeps its own search engine, which virtual threads would
+ * allocate per session. Sessions whose player sends nothing for the idle timeout are closed.
+ *
+ * Needs Java 21.
+ */
+public final class GameServer implements AutoCloseable {
+
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(5);
+
+    private final Duration idleTimeout;
+    private final SearchLimits limits;
+    private final ExecutorService sessionThreads = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService searchExecutor;
+    private final Map<Long, GameSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextSessionId = new AtomicLong(1);
+    private final LongAdder evictedSessions = new LongAdder();
+
+    /**
+     * A server with one search thread per CPU, the default idle timeout and the default
+     * DIFFICULT time budget.
+     */
+    public GameServer() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_IDLE_TIMEOUT, AILogic.DEFAULT_LIMITS);
+    }
+
+    /**
+     * @param searchThreads Number of threads running AI searches, shared by all sessions.
+     * @param idleTimeout Sessions are closed when their player sends nothing for this long.
+     * @param limits Budget of every AI move.
+     */
+    public GameServer(int searchThreads, Duration idleTimeout, SearchLimits limits) {
+        if (searchThreads < 1) {
+            throw new IllegalArgumentException("Search threads must be at least 1, got " + searchThreads);
+        }
+        this.idleTimeout = idleTimeout;
+        this.limits = limits;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.searchExecutor = Executors.newFixedThreadPool(searchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "ai-search-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a session for a newly connected player.
+     *
+     * @return The id of the session.
+     */
+    public long open(Transport transport) {
+        GameSession session = new GameSession(nextSessionId.getAndIncrement(), this, transport);
+        sessions.put(session.getId(), session);
+        sessionThreads.execute(session);
+        return session.getId();
+    }
+
+    /**
+     * Returns the number of open sessions.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the number of sessions closed for being idle.
+     */
+    public long getEvictedCount() {
+        return evictedSessions.sum();
+    }
+
+    /**
+     * Returns the metrics of an open session, or null if it is closed.
+     */
+    public SessionMetrics getMetrics(long sessionId) {
+        GameSession session = sessions.get(sessionId);
+        return session != null ? session.getMetrics() : null;
+    }
+
+    /**
+     * Returns the metrics of every open session by session id.
+     */
+    public Map<Long, SessionMetrics> getAllMetrics() {
+        Map<Long, SessionMetrics> metrics = new HashMap<>();
+        for (GameSession session : sessions.values()) {
+            metrics.put(session.getId(), session.getMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Closes every session, telling its player, and stops the search threads.
+     */
+    @Override
+    public void close() {
+        sessionThreads.shutdownNow();
+        try {
+            sessionThreads.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            searchExecutor.shutdownNow();
+        }
+    }
+
+    Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    SearchLimits getLimits() {
+        return limits;
+    }
+
+    ExecutorService getSearchExecutor() {
+        return searchExecutor;
+    }
+
+    void onEvicted() {
+        evictedSessions.increment();
+    }
+
+    void onClosed(GameSession session) {
+        sessions.remove(session.getId());
+    }
+}
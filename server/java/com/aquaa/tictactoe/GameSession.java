@@ -0,0 +1,192 @@
+package com.aquaa.tictactoe;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * One player's games against the AI, run by GameServer on a virtual thread of its own.
+ *
+ * The session handles its player's messages one at a time. The game is kept as two bitboards
+ * rather than a GameState, so a session is a few dozen bytes plus its thread and transport;
+ * a String board is only built for the AI's search. The search runs on the server's search
+ * threads, while the session's virtual thread waits for it without holding a carrier thread.
+ */
+final class GameSession implements Runnable {
+
+    private static final String USER_SYMBOL = "X";
+    private static final String AI_SYMBOL = "O";
+
+    private final long id;
+    private final GameServer server;
+    private final Transport transport;
+    private final SessionMetrics metrics = new SessionMetrics();
+    // Only used by one search at a time, and the executor orders them
+    private final RandomSource random = RandomSource.of(new SplittableRandom());
+
+    // The current game; geometry is null until the first NEW_GAME
+    private BoardGeometry geometry;
+    private AILogic.Difficulty difficulty;
+    private long userMask;
+    private long aiMask;
+    private boolean inGame;
+
+    GameSession(long id, GameServer server, Transport transport) {
+        this.id = id;
+        this.server = server;
+        this.transport = transport;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    SessionMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void run() {
+        String reason = "Quit";
+        try {
+            while (true) {
+                ClientMessage message = transport.receive(server.getIdleTimeout());
+                if (message == null) {
+                    reason = "Idle for " + server.getIdleTimeout().toSeconds() + " s";
+                    server.onEvicted();
+                    break;
+                }
+                if (message.type() == ClientMessage.Type.QUIT) {
+                    break;
+                }
+                long start = System.nanoTime();
+                handle(message);
+                metrics.onResponse(System.nanoTime() - start);
+            }
+        } catch (InterruptedException e) {
+            reason = "Server shutting down";
+        } catch (RuntimeException e) {
+            reason = "Internal error";
+        } finally {
+            transport.send(ServerMessage.closed(reason));
+            transport.close();
+            server.onClosed(this);
+        }
+    }
+
+    private void handle(ClientMessage message) throws InterruptedException {
+        switch (message.type()) {
+            case NEW_GAME:
+                startGame(message);
+                break;
+            case MOVE:
+                userMove(message.cell());
+                break;
+            default:
+                transport.send(ServerMessage.error("Unknown message " + message.type()));
+                break;
+        }
+    }
+
+    private void startGame(ClientMessage message) throws InterruptedException {
+        BoardGeometry board;
+        try {
+            board = BoardGeometry.parse(message.board());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            transport.send(ServerMessage.error("Not a board: " + message.board()));
+            return;
+        }
+        geometry = board;
+        difficulty = message.difficulty() != null ? message.difficulty() : AILogic.Difficulty.DIFFICULT;
+        userMask = 0;
+        aiMask = 0;
+        inGame = true;
+        metrics.onGameStarted();
+        transport.send(ServerMessage.gameStarted());
+        if (!message.userFirst()) {
+            aiMove();
+        }
+    }
+
+    private void userMove(int cell) throws InterruptedException {
+        if (!inGame) {
+            transport.send(ServerMessage.error("No game in progress"));
+            return;
+        }
+        if (cell < 0 || cell >= geometry.getCellCount() || ((userMask | aiMask) & 1L << cell) != 0) {
+            transport.send(ServerMessage.error("Cell " + cell + " is not free"));
+            return;
+        }
+        userMask |= 1L << cell;
+        if (!checkGameOver()) {
+            aiMove();
+        }
+    }
+
+    private void aiMove() throws InterruptedException {
+        int cell = searchMove();
+        if (cell == AILogic.NO_MOVE) {
+            inGame = false;
+            transport.send(ServerMessage.error("The AI found no move"));
+            return;
+        }
+        aiMask |= 1L << cell;
+        transport.send(ServerMessage.aiMoved(cell));
+        checkGameOver();
+    }
+
+    /**
+     * Ends the game if the last move decided it.
+     *
+     * @return True if the game is over.
+     */
+    private boolean checkGameOver() {
+        ServerMessage.Outcome outcome = null;
+        if (geometry.isWin(userMask)) {
+            outcome = ServerMessage.Outcome.USER_WON;
+        } else if (geometry.isWin(aiMask)) {
+            outcome = ServerMessage.Outcome.AI_WON;
+        } else if ((userMask | aiMask) == geometry.getFullMask()) {
+            outcome = ServerMessage.Outcome.DRAW;
+        }
+        if (outcome == null) {
+            return false;
+        }
+        inGame = false;
+        transport.send(ServerMessage.gameOver(outcome));
+        return true;
+    }
+
+    /**
+     * Runs the AI's search on the server's search threads and waits for it.
+     */
+    private int searchMove() throws InterruptedException {
+        String[][] board = new String[geometry.getRows()][geometry.getColumns()];
+        for (int cell = 0; cell < geometry.getCellCount(); cell++) {
+            long bit = 1L << cell;
+            board[geometry.row(cell)][geometry.column(cell)] =
+                    (userMask & bit) != 0 ? USER_SYMBOL : (aiMask & bit) != 0 ? AI_SYMBOL : "";
+        }
+        BoardGeometry searchGeometry = geometry;
+        AILogic.Difficulty searchDifficulty = difficulty;
+        CancellationToken token = new CancellationToken();
+        long submitted = System.nanoTime();
+        Future<long[]> search = server.getSearchExecutor().submit(() -> {
+            long started = System.nanoTime();
+            int cell = AILogic.getAIMoveCell(board, searchGeometry, searchDifficulty, AI_SYMBOL, USER_SYMBOL,
+                    server.getLimits(), token, random);
+            return new long[]{cell, started, System.nanoTime()};
+        });
+        try {
+            long[] result = search.get();
+            metrics.onAIMove(result[1] - submitted, result[2] - result[1]);
+            return (int) result[0];
+        } catch (InterruptedException e) {
+            token.cancel();
+            search.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            return AILogic.NO_MOVE;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.aquaa.tictactoe;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Transport within one process, for tests and load simulations: the player's side submits
+ * messages and awaits the replies through two queues.
+ */
+public final class InProcessTransport implements Transport {
+
+    private final BlockingQueue<ClientMessage> requests = new LinkedBlockingQueue<>();
+    private final BlockingQueue<ServerMessage> replies = new LinkedBlockingQueue<>();
+    private volatile boolean closed;
+
+    @Override
+    public ClientMessage receive(Duration timeout) throws InterruptedException {
+        return requests.poll(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void send(ServerMessage message) {
+        if (!closed) {
+            replies.add(message);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Player side: sends a message to the session.
+     */
+    public void submit(ClientMessage message) {
+        requests.add(message);
+    }
+
+    /**
+     * Player side: waits for the session's next message.
+     *
+     * @return The message, or null if none came within the timeout.
+     */
+    public ServerMessage await(Duration timeout) throws InterruptedException {
+        return replies.poll(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,211 @@
+package com.aquaa.tictactoe;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of GameServer: many simulated players, each on a virtual thread of its own, play
+ * random moves against the AI through InProcessTransports. Prints the throughput, the response
+ * times seen by the players and the heap used per session. A share of the players (--idle)
+ * stops answering after their games, so their sessions are evicted after --idle-ms.
+ *
+ * Usage: ServerLoadSimulation [--sessions N] [--games N] [--board 3x3|4x4|7x7k5]
+ *        [--difficulty DIFFICULT] [--ai-threads N] [--limits depth:N|nodes:N|time:MS]
+ *        [--idle P] [--idle-ms MS] [--seed N]
+ */
+public class ServerLoadSimulation {
+
+    private static final Duration REPLY_TIMEOUT = Duration.ofSeconds(60);
+
+    private int sessions = 1000;
+    private int games = 5;
+    private String board = "3x3";
+    private AILogic.Difficulty difficulty = AILogic.Difficulty.DIFFICULT;
+    private int aiThreads = Runtime.getRuntime().availableProcessors();
+    private SearchLimits limits = SearchLimits.time(AILogic.DEFAULT_MOVE_TIME_MILLIS);
+    private double idle = 0.1;
+    private long idleMillis = 2000;
+    private long seed = 1;
+
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder responseNanos = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        ServerLoadSimulation simulation = new ServerLoadSimulation();
+        simulation.parseArguments(args);
+        simulation.run();
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--sessions":
+                    sessions = Integer.parseInt(value);
+                    break;
+                case "--games":
+                    games = Integer.parseInt(value);
+                    break;
+                case "--board":
+                    board = value;
+                    break;
+                case "--difficulty":
+                    difficulty = AILogic.Difficulty.valueOf(value);
+                    break;
+                case "--ai-threads":
+                    aiThreads = Integer.parseInt(value);
+                    break;
+                case "--limits":
+                    limits = parseLimits(value);
+                    break;
+                case "--idle":
+                    idle = Double.parseDouble(value);
+                    break;
+                case "--idle-ms":
+                    idleMillis = Long.parseLong(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    private static SearchLimits parseLimits(String spec) {
+        String[] parts = spec.split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Limits must look like depth:4, nodes:100000 or time:50, got " + spec);
+        }
+        switch (parts[0]) {
+            case "depth":
+                return SearchLimits.depth(Integer.parseInt(parts[1]));
+            case "nodes":
+                return SearchLimits.nodes(Long.parseLong(parts[1]));
+            case "time":
+                return SearchLimits.time(Long.parseLong(parts[1]));
+            default:
+                throw new IllegalArgumentException("Unknown limit " + parts[0]);
+        }
+    }
+
+    private void run() throws Exception {
+        BoardGeometry geometry = BoardGeometry.parse(board);
+        System.out.println(sessions + " sessions x " + games + " games of " + difficulty + " on " + geometry
+                + ", " + aiThreads + " AI threads");
+        long heapBefore = usedHeap();
+        SplittableRandom seeds = new SplittableRandom(seed);
+        try (GameServer server = new GameServer(aiThreads, Duration.ofMillis(idleMillis), limits);
+             ExecutorService players = Executors.newVirtualThreadPerTaskExecutor()) {
+            long start = System.nanoTime();
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < sessions; i++) {
+                InProcessTransport transport = new InProcessTransport();
+                server.open(transport);
+                SplittableRandom random = seeds.split();
+                boolean goesIdle = random.nextDouble() < idle;
+                results.add(players.submit(() -> {
+                    play(transport, geometry, random, goesIdle);
+                    return null;
+                }));
+            }
+            System.out.printf(Locale.ROOT, "%,d sessions open, %.1f KB of heap each%n", server.getSessionCount(),
+                    (usedHeap() - heapBefore) / 1024.0 / sessions);
+            for (Future<?> result : results) {
+                result.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long count = moves.sum();
+            System.out.printf(Locale.ROOT, "%,d moves in %.1f s (%,.0f/s), mean response %.2f ms, %d errors%n",
+                    count, seconds, count / seconds, count == 0 ? 0 : responseNanos.sum() / 1e6 / count, errors.sum());
+
+            // The idle players' sessions are still open until the timeout passes, with their metrics
+            Map<Long, SessionMetrics> idleMetrics = server.getAllMetrics();
+            idleMetrics.entrySet().stream().limit(3).forEach(entry ->
+                    System.out.println("Session " + entry.getKey() + ": " + entry.getValue()));
+            System.out.println(idleMetrics.size() + " sessions idle, waiting for eviction");
+            long deadline = System.nanoTime() + 2 * Duration.ofMillis(idleMillis).toNanos();
+            while (server.getSessionCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            System.out.println(server.getEvictedCount() + " sessions evicted, " + server.getSessionCount() + " left open");
+        }
+    }
+
+    /**
+     * Plays the games of one simulated player, then quits or goes idle.
+     */
+    private void play(InProcessTransport transport, BoardGeometry geometry, SplittableRandom random, boolean goesIdle)
+            throws InterruptedException {
+        for (int game = 0; game < games; game++) {
+            boolean userFirst = game % 2 == 0;
+            long userMask = 0;
+            long aiMask = 0;
+            ServerMessage reply = request(transport, ClientMessage.newGame(board, difficulty, userFirst));
+            if (reply != null && !userFirst) {
+                reply = transport.await(REPLY_TIMEOUT);
+            }
+            while (reply != null && reply.type() != ServerMessage.Type.GAME_OVER) {
+                if (reply.type() == ServerMessage.Type.AI_MOVED) {
+                    aiMask |= 1L << reply.cell();
+                } else if (reply.type() != ServerMessage.Type.GAME_STARTED) {
+                    errors.increment();
+                    return;
+                }
+                long free = ~(userMask | aiMask) & geometry.getFullMask();
+                if (geometry.isWin(aiMask) || free == 0) {
+                    // The AI's move ended the game, so GAME_OVER follows it
+                    reply = transport.await(REPLY_TIMEOUT);
+                    continue;
+                }
+                int cell = randomCell(free, random);
+                userMask |= 1L << cell;
+                reply = request(transport, ClientMessage.move(cell));
+            }
+            if (reply == null) {
+                errors.increment();
+                return;
+            }
+        }
+        if (!goesIdle) {
+            transport.submit(ClientMessage.quit());
+        }
+    }
+
+    /**
+     * Sends a message and waits for the first reply, timing the round trip.
+     */
+    private ServerMessage request(InProcessTransport transport, ClientMessage message) throws InterruptedException {
+        long start = System.nanoTime();
+        transport.submit(message);
+        ServerMessage reply = transport.await(REPLY_TIMEOUT);
+        responseNanos.add(System.nanoTime() - start);
+        moves.increment();
+        return reply;
+    }
+
+    private static int randomCell(long free, SplittableRandom random) {
+        int skip = random.nextInt(Long.bitCount(free));
+        for (long rest = free; ; rest &= rest - 1) {
+            if (skip-- == 0) {
+                return Long.numberOfTrailingZeros(rest);
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
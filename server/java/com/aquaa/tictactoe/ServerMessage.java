@@ -0,0 +1,42 @@
+package com.aquaa.tictactoe;
+
+/**
+ * A message from a GameSession to its player. Cells are numbered row * columns + column.
+ */
+public record ServerMessage(Type type, int cell, Outcome outcome, String detail) {
+
+    public enum Type {
+        /** The new game is set up; if the AI moves first, AI_MOVED follows. */
+        GAME_STARTED,
+        AI_MOVED,
+        GAME_OVER,
+        /** The last message was not valid; the game goes on as before it. */
+        ERROR,
+        /** The session ended; detail says why. No messages follow. */
+        CLOSED
+    }
+
+    public enum Outcome {
+        USER_WON, AI_WON, DRAW
+    }
+
+    static ServerMessage gameStarted() {
+        return new ServerMessage(Type.GAME_STARTED, -1, null, null);
+    }
+
+    static ServerMessage aiMoved(int cell) {
+        return new ServerMessage(Type.AI_MOVED, cell, null, null);
+    }
+
+    static ServerMessage gameOver(Outcome outcome) {
+        return new ServerMessage(Type.GAME_OVER, -1, outcome, null);
+    }
+
+    static ServerMessage error(String detail) {
+        return new ServerMessage(Type.ERROR, -1, null, detail);
+    }
+
+    static ServerMessage closed(String detail) {
+        return new ServerMessage(Type.CLOSED, -1, null, detail);
+    }
+}
@@ -0,0 +1,96 @@
+package com.aquaa.tictactoe;
+
+/**
+ * Latency and throughput of one GameSession. Updated by the session's thread and readable
+ * from any thread.
+ *
+ * Response time runs from receiving a player's message to sending the last reply to it.
+ * The AI's share is split into the time its search waited for a search thread (a sign the
+ * server's CPUs are saturated) and the search itself.
+ */
+public final class SessionMetrics {
+
+    private final long createdNanos = System.nanoTime();
+    private long lastActivityNanos = createdNanos;
+    private long requests;
+    private long games;
+    private long aiMoves;
+    private long responseNanos;
+    private long maxResponseNanos;
+    private long aiQueueNanos;
+    private long aiSearchNanos;
+    private long maxAiSearchNanos;
+
+    synchronized void onResponse(long nanos) {
+        requests++;
+        responseNanos += nanos;
+        maxResponseNanos = Math.max(maxResponseNanos, nanos);
+        lastActivityNanos = System.nanoTime();
+    }
+
+    synchronized void onGameStarted() {
+        games++;
+    }
+
+    synchronized void onAIMove(long queueNanos, long searchNanos) {
+        aiMoves++;
+        aiQueueNanos += queueNanos;
+        aiSearchNanos += searchNanos;
+        maxAiSearchNanos = Math.max(maxAiSearchNanos, searchNanos);
+    }
+
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    public synchronized long getGames() {
+        return games;
+    }
+
+    public synchronized long getAIMoves() {
+        return aiMoves;
+    }
+
+    public synchronized long getMeanResponseNanos() {
+        return requests == 0 ? 0 : responseNanos / requests;
+    }
+
+    public synchronized long getMaxResponseNanos() {
+        return maxResponseNanos;
+    }
+
+    public synchronized long getMeanAIQueueNanos() {
+        return aiMoves == 0 ? 0 : aiQueueNanos / aiMoves;
+    }
+
+    public synchronized long getMeanAISearchNanos() {
+        return aiMoves == 0 ? 0 : aiSearchNanos / aiMoves;
+    }
+
+    public synchronized long getMaxAISearchNanos() {
+        return maxAiSearchNanos;
+    }
+
+    /**
+     * Messages handled per second since the session opened.
+     */
+    public synchronized double getRequestsPerSecond() {
+        long elapsed = System.nanoTime() - createdNanos;
+        return elapsed == 0 ? 0 : requests * 1e9 / elapsed;
+    }
+
+    /**
+     * Time since the session last answered a message, or since it opened.
+     */
+    public synchronized long getIdleNanos() {
+        return System.nanoTime() - lastActivityNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return requests + " requests (" + String.format("%.1f", getRequestsPerSecond()) + "/s), " + games + " games, "
+                + "response " + getMeanResponseNanos() / 1000 + " us mean / " + maxResponseNanos / 1000 + " us max, "
+                + aiMoves + " AI moves: queue " + getMeanAIQueueNanos() / 1000 + " us, search "
+                + getMeanAISearchNanos() / 1000 + " us mean / " + maxAiSearchNanos / 1000 + " us max";
+    }
+}
@@ -0,0 +1,27 @@
+package com.aquaa.tictactoe;
+
+import java.time.Duration;
+
+/**
+ * Connection between one player and their GameSession. Every session has its own virtual
+ * thread, so implementations may block, e.g. on a socket.
+ *
+ * @see InProcessTransport
+ */
+public interface Transport {
+
+    /**
+     * Waits for the player's next message.
+     *
+     * @return The message, null if none came within the timeout, or ClientMessage.quit() if
+     *         the player disconnected.
+     */
+    ClientMessage receive(Duration timeout) throws InterruptedException;
+
+    void send(ServerMessage message);
+
+    /**
+     * Closes the connection. Called once, after the session's last message.
+     */
+    void close();
+}
@@ -0,0 +1,63 @@
+package com.aquaa.tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks AILogic.analyze against brute-force negamax: with no limits every move of every
+ * reachable 3x3 position gets its exact score, outcome and distance.
+ */
+final class BoardAnalysisTest {
+
+    private static final BoardGeometry GEOMETRY = BoardGeometry.STANDARD;
+
+    @Test
+    void scoresEveryMoveOfEveryReachable3x3Position() {
+        for (long[] position : Positions.reachable(GEOMETRY)) {
+            BoardAnalysis analysis = AILogic.analyze(Positions.board(GEOMETRY, position[0], position[1]), GEOMETRY,
+                    "X", "O", SearchLimits.UNLIMITED, new CancellationToken());
+            assertAnalysis(analysis, position[0], position[1]);
+        }
+    }
+
+    @Test
+    void batchAnalysisMatchesSinglePositions() {
+        List<long[]> positions = Positions.reachable(GEOMETRY);
+        List<String[][]> boards = new ArrayList<>();
+        for (long[] position : positions) {
+            // Batches name the players by who moved first, so give the mover's marks to X when it is X's turn
+            boolean xToMove = Long.bitCount(position[0]) == Long.bitCount(position[1]);
+            boards.add(xToMove ? Positions.board(GEOMETRY, position[0], position[1])
+                    : Positions.board(GEOMETRY, position[1], position[0]));
+        }
+        BoardAnalysis[] analyses = AILogic.analyze(boards, GEOMETRY, "X", "O", SearchLimits.UNLIMITED, new CancellationToken());
+        assertEquals(positions.size(), analyses.length);
+        for (int i = 0; i < analyses.length; i++) {
+            assertAnalysis(analyses[i], positions.get(i)[0], positions.get(i)[1]);
+        }
+    }
+
+    private static void assertAnalysis(BoardAnalysis analysis, long own, long other) {
+        String position = "own " + Long.toBinaryString(own) + " other " + Long.toBinaryString(other);
+        long empty = ~(own | other) & GEOMETRY.getFullMask();
+        assertTrue(analysis.isComplete(), position);
+        assertEquals(empty, analysis.getMoves(), position);
+        assertEquals(Positions.bestMoves(GEOMETRY, own, other), analysis.getBestMoves(), position);
+        for (long rest = empty; rest != 0; rest &= rest - 1) {
+            int cell = Long.numberOfTrailingZeros(rest);
+            int row = GEOMETRY.row(cell);
+            int column = GEOMETRY.column(cell);
+            int score = Positions.moveScore(GEOMETRY, own, other, cell);
+            assertEquals(score, analysis.getScore(row, column), position + " cell " + cell);
+            BoardAnalysis.Outcome outcome = score > 0 ? BoardAnalysis.Outcome.WIN
+                    : score < 0 ? BoardAnalysis.Outcome.LOSS : BoardAnalysis.Outcome.DRAW;
+            assertEquals(outcome, analysis.getOutcome(row, column), position + " cell " + cell);
+            int distance = score == 0 ? Long.bitCount(empty) : SearchEngine.WIN_SCORE - Math.abs(score) + 1;
+            assertEquals(distance, analysis.getDistance(row, column), position + " cell " + cell);
+        }
+    }
+}
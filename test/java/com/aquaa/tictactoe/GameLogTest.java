@@ -0,0 +1,149 @@
+package com.aquaa.tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that games written to a GameLog read back unchanged, also after reopening, and that a
+ * record cut short by a crash is dropped without losing the games before it.
+ */
+final class GameLogTest {
+
+    private static final String[] BOARDS = {"3x3", "4x4", "7x7k5", "8x8k5"};
+
+    @TempDir
+    File directory;
+
+    @Test
+    void gamesReadBackAfterReopening() throws IOException {
+        File file = new File(directory, "games.log");
+        List<GameState> games = randomGames(40, 1);
+        try (GameLog log = GameLog.open(file)) {
+            for (int i = 0; i < games.size(); i++) {
+                log.append(encode(games.get(i), i));
+                assertGame(log, i, games.get(i)); // Readable right after the append
+            }
+        }
+        try (GameLog log = GameLog.open(file)) {
+            assertEquals(games.size(), log.getGameCount());
+            for (int i = 0; i < games.size(); i++) {
+                assertGame(log, i, games.get(i));
+            }
+        }
+    }
+
+    @Test
+    void replayStopsAtAnyPly() throws IOException {
+        GameState game = randomGames(1, 2).get(0);
+        try (GameLog log = GameLog.open(new File(directory, "games.log"))) {
+            log.append(encode(game, 0));
+            for (int ply = 0; ply <= game.getMoveCount(); ply++) {
+                GameState replayed = log.replay(0, ply);
+                assertEquals(ply, replayed.getMoveCount());
+                assertEquals(game.getMoveCount(), replayed.getHistorySize()); // The rest can be redone
+                game.jumpToPly(ply);
+                assertArrayEquals(game.getCurrentBoardState(), replayed.getCurrentBoardState());
+            }
+        }
+    }
+
+    @Test
+    void truncatedLastRecordIsDropped() throws IOException {
+        File file = new File(directory, "games.log");
+        List<GameState> games = randomGames(5, 3);
+        try (GameLog log = GameLog.open(file)) {
+            for (int i = 0; i < games.size(); i++) {
+                log.append(encode(games.get(i), i));
+            }
+        }
+        int lastLength = encode(games.get(4), 4).length;
+        for (int cut = 1; cut < lastLength; cut++) {
+            File copy = new File(directory, "cut" + cut + ".log");
+            copyPrefix(file, copy, file.length() - cut);
+            try (GameLog log = GameLog.open(copy)) {
+                assertEquals(4, log.getGameCount(), "cut " + cut);
+                for (int i = 0; i < 4; i++) {
+                    assertGame(log, i, games.get(i));
+                }
+                // The torn bytes are gone, so a new game lands right after the last good one
+                log.append(encode(games.get(4), 4));
+            }
+            assertEquals(file.length(), copy.length(), "cut " + cut);
+            try (GameLog log = GameLog.open(copy)) {
+                assertEquals(5, log.getGameCount());
+                assertGame(log, 4, games.get(4));
+            }
+        }
+    }
+
+    @Test
+    void emptyFileHasNoGames() throws IOException {
+        File file = new File(directory, "games.log");
+        try (GameLog log = GameLog.open(file)) {
+            assertEquals(0, log.getGameCount());
+        }
+        assertTrue(file.exists());
+    }
+
+    private static byte[] encode(GameState game, int index) {
+        AILogic.Difficulty difficulty = AILogic.Difficulty.values()[index % AILogic.Difficulty.values().length];
+        return GameLog.encode(game, difficulty, index % 2 == 0, 1_000_000L * index);
+    }
+
+    private static void assertGame(GameLog log, int index, GameState expected) {
+        AILogic.Difficulty difficulty = AILogic.Difficulty.values()[index % AILogic.Difficulty.values().length];
+        assertEquals(difficulty, log.getDifficulty(index));
+        assertEquals(index % 2 == 0, log.isUserFirst(index));
+        assertEquals(1_000_000L * index, log.getTimestamp(index));
+        assertEquals(expected.getMoveCount(), log.getMoveCount(index));
+        String winner = expected.checkWinner();
+        int result = winner != null ? (winner.equals("X") ? GameLog.RESULT_X_WON : GameLog.RESULT_O_WON)
+                : expected.isBoardFull() ? GameLog.RESULT_DRAW : GameLog.RESULT_UNFINISHED;
+        assertEquals(result, log.getResult(index));
+        GameState replayed = log.replay(index, expected.getMoveCount());
+        assertEquals(expected.getGeometry(), replayed.getGeometry());
+        assertEquals(expected.getFirstPlayer(), replayed.getFirstPlayer());
+        assertArrayEquals(expected.getCurrentBoardState(), replayed.getCurrentBoardState());
+        assertEquals(winner, replayed.checkWinner());
+    }
+
+    /**
+     * Random games on several boards; some stop before the end, some have O move first.
+     */
+    private static List<GameState> randomGames(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<GameState> games = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BoardGeometry geometry = BoardGeometry.parse(BOARDS[i % BOARDS.length]);
+            GameState game = new GameState(geometry);
+            String[] symbols = random.nextBoolean() ? new String[]{"X", "O"} : new String[]{"O", "X"};
+            boolean unfinished = random.nextInt(4) == 0;
+            int plies = unfinished ? random.nextInt(geometry.getCellCount()) : geometry.getCellCount();
+            while (game.getMoveCount() < plies && game.checkWinner() == null && !game.isBoardFull()) {
+                int cell = GameStateTest.randomEmptyCell(game, random);
+                game.makeMove(geometry.row(cell), geometry.column(cell), symbols[game.getMoveCount() & 1]);
+            }
+            games.add(game);
+        }
+        return games;
+    }
+
+    private static void copyPrefix(File from, File to, long length) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(from, "r");
+             RandomAccessFile out = new RandomAccessFile(to, "rw")) {
+            byte[] bytes = new byte[(int) length];
+            in.readFully(bytes);
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.aquaa.tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the incremental win detection of GameState against a scan of the whole board, and
+ * that undo, redo and jumpToPly leave the game as a replay of its moves would.
+ */
+final class GameStateTest {
+
+    private static final String[] BOARDS = {"3x3", "4x4", "5x5k4", "7x7k5", "8x8k5", "3x5k3"};
+    private static final String[] SYMBOLS = {"X", "O"};
+
+    @Test
+    void detectsTheWinnerOfRandomGames() {
+        for (String spec : BOARDS) {
+            BoardGeometry geometry = BoardGeometry.parse(spec);
+            SplittableRandom random = new SplittableRandom(spec.hashCode());
+            for (int game = 0; game < 300; game++) {
+                GameState state = new GameState(geometry);
+                for (int ply = 0; state.checkWinner() == null && !state.isBoardFull(); ply++) {
+                    int cell = randomEmptyCell(state, random);
+                    String player = SYMBOLS[ply & 1];
+                    assertTrue(state.makeMove(geometry.row(cell), geometry.column(cell), player));
+                    assertEquals(scanWinner(state.getCurrentBoardState(), geometry.getWinLength()), state.checkWinner(),
+                            spec + " game " + game + " ply " + ply);
+                    assertEquals(ply + 1 == geometry.getCellCount(), state.isBoardFull());
+                }
+            }
+        }
+    }
+
+    @Test
+    void winningMovesMatchTrialMoves() {
+        for (String spec : BOARDS) {
+            BoardGeometry geometry = BoardGeometry.parse(spec);
+            SplittableRandom random = new SplittableRandom(spec.hashCode());
+            for (int game = 0; game < 100; game++) {
+                GameState state = new GameState(geometry);
+                for (int ply = 0; state.checkWinner() == null && !state.isBoardFull(); ply++) {
+                    String[][] board = state.getBoard();
+                    for (int cell = 0; cell < geometry.getCellCount(); cell++) {
+                        int row = geometry.row(cell);
+                        int column = geometry.column(cell);
+                        if (!board[row][column].isEmpty()) {
+                            continue;
+                        }
+                        for (String player : SYMBOLS) {
+                            board[row][column] = player;
+                            boolean wins = player.equals(scanWinner(board, geometry.getWinLength()));
+                            board[row][column] = "";
+                            assertEquals(wins, state.isWinningMove(row, column, player), spec + " cell " + cell + " " + player);
+                        }
+                    }
+                    int cell = randomEmptyCell(state, random);
+                    state.makeMove(geometry.row(cell), geometry.column(cell), SYMBOLS[ply & 1]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void rejectsMovesOnTakenOrMissingCells() {
+        GameState state = new GameState();
+        assertTrue(state.makeMove(1, 1, "X"));
+        assertFalse(state.makeMove(1, 1, "O"));
+        assertFalse(state.makeMove(3, 0, "O"));
+        assertFalse(state.makeMove(0, -1, "O"));
+        assertEquals(1, state.getMoveCount());
+        assertNull(state.checkWinner());
+    }
+
+    @Test
+    void undoAndRedoRestoreTheBoardWinnerAndHash() {
+        for (String spec : BOARDS) {
+            BoardGeometry geometry = BoardGeometry.parse(spec);
+            SplittableRandom random = new SplittableRandom(spec.hashCode());
+            for (int game = 0; game < 100; game++) {
+                GameState state = new GameState(geometry);
+                GameState[] snapshots = new GameState[geometry.getCellCount() + 1];
+                snapshots[0] = replay(state, 0);
+                int plies = 0;
+                while (state.checkWinner() == null && !state.isBoardFull()) {
+                    int cell = randomEmptyCell(state, random);
+                    state.makeMove(geometry.row(cell), geometry.column(cell), SYMBOLS[plies & 1]);
+                    snapshots[++plies] = replay(state, plies);
+                }
+                for (int ply = plies; ply > 0; ply--) {
+                    assertTrue(state.undoMove());
+                    assertSameState(snapshots[ply - 1], state, spec + " undo to " + (ply - 1));
+                }
+                assertFalse(state.undoMove());
+                for (int ply = 1; ply <= plies; ply++) {
+                    assertTrue(state.redoMove());
+                    assertSameState(snapshots[ply], state, spec + " redo to " + ply);
+                }
+                assertFalse(state.redoMove());
+                assertEquals(plies, state.getHistorySize());
+            }
+        }
+    }
+
+    @Test
+    void jumpToPlyMatchesAReplayFromTheStart() {
+        for (String spec : BOARDS) {
+            BoardGeometry geometry = BoardGeometry.parse(spec);
+            SplittableRandom random = new SplittableRandom(spec.hashCode());
+            for (int game = 0; game < 100; game++) {
+                GameState state = new GameState(geometry);
+                while (state.checkWinner() == null && !state.isBoardFull()) {
+                    int cell = randomEmptyCell(state, random);
+                    state.makeMove(geometry.row(cell), geometry.column(cell), SYMBOLS[state.getMoveCount() & 1]);
+                }
+                GameState full = replay(state, state.getMoveCount());
+                for (int jump = 0; jump < 10; jump++) {
+                    int ply = random.nextInt(state.getHistorySize() + 1);
+                    state.jumpToPly(ply);
+                    assertSameState(replay(full, ply), state, spec + " jump to " + ply);
+                }
+            }
+        }
+    }
+
+    @Test
+    void aNewMoveAfterUndoDropsTheRedoHistory() {
+        GameState state = new GameState();
+        state.makeMove(0, 0, "X");
+        state.makeMove(1, 1, "O");
+        state.makeMove(0, 1, "X");
+        state.undoMove();
+        state.undoMove();
+        assertEquals("O", state.getRedoMovePlayer());
+        assertTrue(state.makeMove(2, 2, "O"));
+        assertEquals(2, state.getHistorySize());
+        assertNull(state.getRedoMovePlayer());
+        assertFalse(state.redoMove());
+        assertThrows(IllegalArgumentException.class, () -> state.jumpToPly(3));
+        assertThrows(IllegalArgumentException.class, () -> state.jumpToPly(-1));
+    }
+
+    @Test
+    void theHashFollowsTheFirstMoverAfterUndoingToAnEmptyBoard() {
+        GameState state = new GameState();
+        state.makeMove(0, 0, "X");
+        state.makeMove(1, 1, "O");
+        state.jumpToPly(0);
+        assertTrue(state.makeMove(1, 1, "O"));
+        assertTrue(state.makeMove(0, 0, "X"));
+        assertEquals("O", state.getFirstPlayer());
+
+        GameState fresh = new GameState();
+        fresh.makeMove(1, 1, "O");
+        fresh.makeMove(0, 0, "X");
+        assertSameState(fresh, state, "O first after undo");
+
+        GameState swapped = new GameState();
+        swapped.makeMove(1, 1, "X");
+        swapped.makeMove(0, 0, "O");
+        assertEquals(swapped.hash(), state.hash(), "the first mover has the same keys whatever its symbol");
+    }
+
+    /**
+     * Plays the first plies of the game's history on a new game.
+     */
+    private static GameState replay(GameState game, int plies) {
+        GameState copy = new GameState(game.getGeometry());
+        BoardGeometry geometry = game.getGeometry();
+        String player = game.getFirstPlayer();
+        for (int ply = 0; ply < plies; ply++) {
+            int cell = game.getMoveCell(ply);
+            copy.makeMove(geometry.row(cell), geometry.column(cell), player);
+            player = player.equals("X") ? "O" : "X";
+        }
+        return copy;
+    }
+
+    private static void assertSameState(GameState expected, GameState actual, String message) {
+        assertArrayEquals(expected.getCurrentBoardState(), actual.getCurrentBoardState(), message);
+        assertEquals(expected.checkWinner(), actual.checkWinner(), message);
+        assertEquals(expected.getMoveCount(), actual.getMoveCount(), message);
+        assertEquals(expected.isBoardFull(), actual.isBoardFull(), message);
+        assertEquals(expected.hash(), actual.hash(), message);
+        assertEquals(expected.canonicalHash(), actual.canonicalHash(), message);
+    }
+
+    static int randomEmptyCell(GameState state, SplittableRandom random) {
+        BoardGeometry geometry = state.getGeometry();
+        int cell;
+        do {
+            cell = random.nextInt(geometry.getCellCount());
+        } while (!state.isCellEmpty(geometry.row(cell), geometry.column(cell)));
+        return cell;
+    }
+
+    /**
+     * Returns the player with winLength marks in a row, column or diagonal, or null. Games end
+     * at the first win, so at most one player has one.
+     */
+    static String scanWinner(String[][] board, int winLength) {
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int row = 0; row < board.length; row++) {
+            for (int column = 0; column < board[row].length; column++) {
+                String player = board[row][column];
+                if (player.isEmpty()) {
+                    continue;
+                }
+                for (int[] direction : directions) {
+                    int length = 1;
+                    int r = row + direction[0];
+                    int c = column + direction[1];
+                    while (length < winLength && r >= 0 && r < board.length && c >= 0 && c < board[r].length
+                            && board[r][c].equals(player)) {
+                        length++;
+                        r += direction[0];
+                        c += direction[1];
+                    }
+                    if (length == winLength) {
+                        return player;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
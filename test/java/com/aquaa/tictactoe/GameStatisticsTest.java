@@ -0,0 +1,80 @@
+package com.aquaa.tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that closed statistics are still written, and that updates and flushes racing with
+ * close neither throw nor get lost before it.
+ */
+final class GameStatisticsTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void closeWritesPendingResults() throws InterruptedException {
+        File file = new File(directory, "statistics");
+        GameStatistics statistics = GameStatistics.open(file);
+        statistics.recordGame(AILogic.Difficulty.DIFFICULT, true, 4, GameStatistics.DRAW);
+        statistics.recordGame(AILogic.Difficulty.EASY, false, 0, GameStatistics.USER_WIN);
+        statistics.close();
+
+        GameStatistics reopened = awaitFile(file);
+        assertTrue(reopened.isLoaded());
+        assertEquals(1, reopened.getTotal(GameStatistics.DRAW));
+        assertEquals(1, reopened.getTotal(GameStatistics.USER_WIN));
+        assertEquals(1, reopened.getByDifficulty(AILogic.Difficulty.DIFFICULT, GameStatistics.DRAW));
+        assertEquals(1, reopened.getByFirstPlayer(false, GameStatistics.USER_WIN));
+        assertEquals(1, reopened.getByOpening(4, GameStatistics.DRAW));
+        reopened.close();
+    }
+
+    @Test
+    void updatesAndFlushesAfterCloseAreIgnored() {
+        GameStatistics statistics = GameStatistics.open(new File(directory, "statistics"));
+        statistics.close();
+        statistics.flush();
+        statistics.recordGame(AILogic.Difficulty.AVERAGE, true, 1, GameStatistics.AI_WIN);
+        statistics.close();
+        assertEquals(1, statistics.getTotal(GameStatistics.AI_WIN)); // Still counted in memory
+    }
+
+    @Test
+    void updatesRacingWithCloseNeverThrow() throws InterruptedException {
+        // The writes fail for want of a directory, so none is left running when the test ends
+        File file = new File(directory, "missing/statistics");
+        for (int round = 0; round < 200; round++) {
+            GameStatistics statistics = GameStatistics.open(file);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread updater = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 50; i++) {
+                        statistics.recordGame(AILogic.Difficulty.EASY, i % 2 == 0, 0, GameStatistics.DRAW);
+                        statistics.flush();
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            updater.start();
+            statistics.close();
+            updater.join();
+            assertNull(failure.get(), "round " + round);
+        }
+    }
+
+    private static GameStatistics awaitFile(File file) throws InterruptedException {
+        // The write runs on the statistics' own thread; the rename makes the file appear whole
+        for (int i = 0; i < 500 && !file.exists(); i++) {
+            Thread.sleep(10);
+        }
+        return GameStatistics.open(file);
+    }
+}
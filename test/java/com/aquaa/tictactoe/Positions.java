@@ -0,0 +1,128 @@
+package com.aquaa.tictactoe;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Test positions and a brute-force solver to check the engine against.
+ *
+ * A position is {ownMask, otherMask} with the owner of ownMask to move.
+ */
+final class Positions {
+
+    private Positions() {
+    }
+
+    /**
+     * Returns every position reachable in a game on the board that is not over yet. Only
+     * feasible for 3x3.
+     */
+    static List<long[]> reachable(BoardGeometry geometry) {
+        List<long[]> positions = new ArrayList<>();
+        collect(geometry, 0, 0, new HashSet<>(), positions);
+        return positions;
+    }
+
+    private static void collect(BoardGeometry geometry, long own, long other, Set<List<Long>> seen, List<long[]> positions) {
+        if (geometry.isWin(other) || (own | other) == geometry.getFullMask() || !seen.add(List.of(own, other))) {
+            return;
+        }
+        positions.add(new long[]{own, other});
+        for (long rest = ~(own | other) & geometry.getFullMask(); rest != 0; rest &= rest - 1) {
+            collect(geometry, other, own | (rest & -rest), seen, positions);
+        }
+    }
+
+    /**
+     * Returns random positions, not over yet, of a game with the given number of stones.
+     */
+    static List<long[]> random(BoardGeometry geometry, int stones, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<long[]> positions = new ArrayList<>();
+        while (positions.size() < count) {
+            long own = 0;
+            long other = 0;
+            for (int placed = 0; placed < stones; placed++) {
+                int cell;
+                do {
+                    cell = random.nextInt(geometry.getCellCount());
+                } while (((own | other) & 1L << cell) != 0);
+                // The player to move has made the same number of moves or one less
+                if (placed % 2 == stones % 2) {
+                    own |= 1L << cell;
+                } else {
+                    other |= 1L << cell;
+                }
+            }
+            if (!geometry.isWin(own) && !geometry.isWin(other) && (own | other) != geometry.getFullMask()) {
+                positions.add(new long[]{own, other});
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the score of a move for the player owning own, by plain negamax without any
+     * pruning: WIN_SCORE minus the plies after the move to a forced win, its negative for a
+     * forced loss, 0 for a draw.
+     */
+    static int moveScore(BoardGeometry geometry, long own, long other, int cell) {
+        return -negamax(geometry, other, own | 1L << cell, 0);
+    }
+
+    /**
+     * Returns the mask of moves with the best moveScore.
+     */
+    static long bestMoves(BoardGeometry geometry, long own, long other) {
+        long best = 0;
+        int bestScore = Integer.MIN_VALUE;
+        for (long rest = ~(own | other) & geometry.getFullMask(); rest != 0; rest &= rest - 1) {
+            int cell = Long.numberOfTrailingZeros(rest);
+            int score = moveScore(geometry, own, other, cell);
+            if (score > bestScore) {
+                bestScore = score;
+                best = 0;
+            }
+            if (score == bestScore) {
+                best |= 1L << cell;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the best moveScore of the position.
+     */
+    static int bestScore(BoardGeometry geometry, long own, long other) {
+        return moveScore(geometry, own, other, Long.numberOfTrailingZeros(bestMoves(geometry, own, other)));
+    }
+
+    private static int negamax(BoardGeometry geometry, long own, long other, int depth) {
+        if (geometry.isWin(other)) {
+            return depth - SearchEngine.WIN_SCORE;
+        }
+        if ((own | other) == geometry.getFullMask()) {
+            return 0;
+        }
+        int best = Integer.MIN_VALUE;
+        for (long rest = ~(own | other) & geometry.getFullMask(); rest != 0; rest &= rest - 1) {
+            best = Math.max(best, -negamax(geometry, other, own | (rest & -rest), depth + 1));
+        }
+        return best;
+    }
+
+    /**
+     * Returns the position as a board of "X" (own) and "O" (other) marks.
+     */
+    static String[][] board(BoardGeometry geometry, long own, long other) {
+        String[][] board = new String[geometry.getRows()][geometry.getColumns()];
+        for (int cell = 0; cell < geometry.getCellCount(); cell++) {
+            board[geometry.row(cell)][geometry.column(cell)] =
+                    (own & 1L << cell) != 0 ? "X" : (other & 1L << cell) != 0 ? "O" : "";
+        }
+        return board;
+    }
+}
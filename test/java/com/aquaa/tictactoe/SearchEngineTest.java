@@ -0,0 +1,86 @@
+package com.aquaa.tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the alpha-beta search against brute-force negamax: with no limits it must find the
+ * exact score and every optimal move, with one thread or several.
+ */
+final class SearchEngineTest {
+
+    @Test
+    void findsEveryOptimalMoveOnEveryReachable3x3Position() {
+        BoardGeometry geometry = BoardGeometry.STANDARD;
+        List<long[]> positions = Positions.reachable(geometry);
+        assertEquals(4520, positions.size());
+        SearchEngine engine = new SearchEngine(new TranspositionTable(16));
+        for (long[] position : positions) {
+            assertSearch(engine, geometry, position[0], position[1]);
+        }
+    }
+
+    @Test
+    void findsEveryOptimalMoveOnLate4x4Positions() {
+        BoardGeometry geometry = BoardGeometry.of(4, 4, 4);
+        SearchEngine engine = new SearchEngine(new TranspositionTable(18));
+        for (long[] position : Positions.random(geometry, 8, 50, 1)) {
+            assertSearch(engine, geometry, position[0], position[1]);
+        }
+    }
+
+    @Test
+    void findsEveryOptimalMoveOnLate5x5Positions() {
+        BoardGeometry geometry = BoardGeometry.of(5, 5, 4);
+        SearchEngine engine = new SearchEngine(new TranspositionTable(18));
+        for (long[] position : Positions.random(geometry, 17, 30, 2)) {
+            assertSearch(engine, geometry, position[0], position[1]);
+        }
+    }
+
+    static void assertSearch(SearchEngine engine, BoardGeometry geometry, long own, long other) {
+        long moves = engine.search(geometry, own, other, SearchLimits.UNLIMITED);
+        String position = geometry + " own " + Long.toBinaryString(own) + " other " + Long.toBinaryString(other);
+        assertEquals(Positions.bestMoves(geometry, own, other), moves, position);
+        assertEquals(Positions.bestScore(geometry, own, other), engine.getBestScore(), position);
+    }
+
+    @Test
+    void parallelSearchFindsTheSameMovesAsBruteForce() {
+        SearchEngine engine = new SearchEngine(new TranspositionTable(18), 3);
+        try {
+            BoardGeometry standard = BoardGeometry.STANDARD;
+            for (long[] position : Positions.reachable(standard)) {
+                assertSearch(engine, standard, position[0], position[1]);
+            }
+            BoardGeometry geometry = BoardGeometry.of(4, 4, 4);
+            for (long[] position : Positions.random(geometry, 8, 30, 3)) {
+                assertSearch(engine, geometry, position[0], position[1]);
+            }
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void parallelSearchMatchesTheSerialSearchAtAFixedDepth() {
+        for (String spec : new String[]{"4x4", "5x5k4", "7x7k5"}) {
+            BoardGeometry geometry = BoardGeometry.parse(spec);
+            for (long[] position : Positions.random(geometry, 2, 5, 4)) {
+                SearchEngine serial = new SearchEngine(new TranspositionTable(18));
+                SearchEngine parallel = new SearchEngine(new TranspositionTable(18), 4);
+                try {
+                    SearchLimits limits = SearchLimits.depth(5);
+                    long serialMoves = serial.search(geometry, position[0], position[1], limits);
+                    long parallelMoves = parallel.search(geometry, position[0], position[1], limits);
+                    assertEquals(serialMoves, parallelMoves, spec);
+                    assertEquals(serial.getBestScore(), parallel.getBestScore(), spec);
+                } finally {
+                    parallel.shutdown();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.aquaa.tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.BitSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks the dense position index of Tablebase and lookups in a 3x3 table built here by brute
+ * force, in the file format TablebaseGenerator writes.
+ */
+final class TablebaseTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void indexIsABijectionOn3x3() {
+        assertBijection(9);
+    }
+
+    @Test
+    void indexIsABijectionOn4x4() {
+        assertBijection(16);
+    }
+
+    @Test
+    void valuesRoundTrip() {
+        for (int value = 0; value <= Tablebase.MAX_VALUE; value++) {
+            assertEquals(value, Tablebase.value(Tablebase.plies(value)));
+        }
+        assertEquals(1, Tablebase.plies(1));
+        assertEquals(15, Tablebase.plies(Tablebase.MAX_WIN_VALUE));
+        assertEquals(-2, Tablebase.plies(Tablebase.MAX_WIN_VALUE + 1));
+        assertThrows(IllegalArgumentException.class, () -> Tablebase.value(2));
+        assertThrows(IllegalArgumentException.class, () -> Tablebase.value(17));
+        assertThrows(IllegalArgumentException.class, () -> Tablebase.value(-3));
+    }
+
+    @Test
+    void lookupsMatchBruteForceOn3x3() throws IOException {
+        BoardGeometry geometry = BoardGeometry.STANDARD;
+        Tablebase tablebase = Tablebase.map(write(geometry, new File(directory, "tablebase_3x3.bin")));
+        assertEquals(geometry, tablebase.getGeometry());
+        for (long[] position : Positions.reachable(geometry)) {
+            long own = position[0];
+            long other = position[1];
+            String name = "own " + Long.toBinaryString(own) + " other " + Long.toBinaryString(other);
+            assertTrue(tablebase.contains(own, other), name);
+            assertEquals(Positions.bestMoves(geometry, own, other), tablebase.getBestMoves(own, other), name);
+            assertEquals(Positions.bestScore(geometry, own, other), tablebase.getScore(own, other), name);
+        }
+        assertFalse(tablebase.contains(0b11, 0)); // The mover has more stones
+        assertFalse(tablebase.contains(0b1_1000, 0b111)); // Already won
+        assertEquals(0, tablebase.getBestMoves(0b1_1000, 0b111));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotTablebases() throws IOException {
+        File file = write(BoardGeometry.STANDARD, new File(directory, "tablebase_3x3.bin"));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        assertThrows(IOException.class, () -> Tablebase.map(file));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeInt(0x12345678);
+        }
+        assertThrows(IOException.class, () -> Tablebase.map(file));
+    }
+
+    /**
+     * Checks that every legal position gets its own index and the indices fill the range.
+     */
+    private static void assertBijection(int cells) {
+        long[] groupOffsets = Tablebase.groupOffsets(cells);
+        long count = groupOffsets[cells + 1];
+        BitSet seen = new BitSet((int) count);
+        long positions = 0;
+        for (int stones = 0; stones <= cells; stones++) {
+            for (long occupied = (1L << stones) - 1; occupied < 1L << cells; occupied = nextSubset(occupied)) {
+                int[] occupiedCells = cells(occupied, stones);
+                for (long subset = (1L << stones / 2) - 1; subset < 1L << stones; subset = nextSubset(subset)) {
+                    long own = 0;
+                    for (int i = 0; i < stones; i++) {
+                        if ((subset & 1L << i) != 0) {
+                            own |= 1L << occupiedCells[i];
+                        }
+                    }
+                    long index = Tablebase.index(cells, groupOffsets, own, occupied & ~own);
+                    assertTrue(index >= groupOffsets[stones] && index < groupOffsets[stones + 1]);
+                    assertFalse(seen.get((int) index), "index " + index + " taken twice");
+                    seen.set((int) index);
+                    positions++;
+                    if (subset == 0) {
+                        break;
+                    }
+                }
+                if (occupied == 0) {
+                    break;
+                }
+            }
+        }
+        assertEquals(count, positions);
+        assertEquals(count, seen.cardinality());
+    }
+
+    /**
+     * Solves every legal position of the board by brute force and writes the table.
+     */
+    private static File write(BoardGeometry geometry, File file) throws IOException {
+        int cells = geometry.getCellCount();
+        long[] groupOffsets = Tablebase.groupOffsets(cells);
+        byte[] values = new byte[(int) groupOffsets[cells + 1]];
+        for (long occupied = 0; occupied < 1L << cells; occupied++) {
+            int stones = Long.bitCount(occupied);
+            for (long own = occupied; ; own = (own - 1) & occupied) {
+                long other = occupied & ~own;
+                if (Long.bitCount(own) == stones / 2 && !geometry.isWin(own) && !geometry.isWin(other)
+                        && occupied != geometry.getFullMask()) {
+                    int score = Positions.bestScore(geometry, own, other);
+                    int plies = score > 0 ? SearchEngine.WIN_SCORE - score + 1
+                            : score < 0 ? -SearchEngine.WIN_SCORE - score - 1 : 0;
+                    values[(int) Tablebase.index(cells, groupOffsets, own, other)] = (byte) Tablebase.value(plies);
+                }
+                if (own == 0) {
+                    break;
+                }
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(Tablebase.VERSION);
+            out.writeInt(geometry.getRows());
+            out.writeInt(geometry.getColumns());
+            out.writeInt(geometry.getWinLength());
+            out.writeInt(Tablebase.BITS_PER_POSITION);
+            out.writeInt(values.length);
+            for (int i = 0; i < values.length; i += 2) {
+                int high = i + 1 < values.length ? values[i + 1] : 0;
+                out.writeByte(high << 4 | values[i]);
+            }
+        }
+        return file;
+    }
+
+    private static int[] cells(long mask, int count) {
+        int[] cells = new int[count];
+        int i = 0;
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            cells[i++] = Long.numberOfTrailingZeros(rest);
+        }
+        return cells;
+    }
+
+    /**
+     * Returns the next larger mask with the same number of bits (Gosper's hack).
+     */
+    private static long nextSubset(long mask) {
+        long lowest = mask & -mask;
+        long ripple = mask + lowest;
+        return ripple | ((mask ^ ripple) >>> 2) / lowest;
+    }
+}
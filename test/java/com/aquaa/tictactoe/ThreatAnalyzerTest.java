@@ -0,0 +1,134 @@
+package com.aquaa.tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks ThreatAnalyzer against the trial-placement scan it replaced: place a mark on every
+ * empty cell and look for a complete line on the whole board.
+ */
+final class ThreatAnalyzerTest {
+
+    @Test
+    void matchesTheScanOnEveryReachable3x3Position() {
+        BoardGeometry geometry = BoardGeometry.STANDARD;
+        for (long[] position : Positions.reachable(geometry)) {
+            assertAnalysis(geometry, position[0], position[1]);
+        }
+    }
+
+    @Test
+    void matchesTheScanOnRandomPositionsOfLargerBoards() {
+        for (String spec : new String[]{"4x4", "5x5k4", "7x7k5", "8x8k5", "4x6k3"}) {
+            BoardGeometry geometry = BoardGeometry.parse(spec);
+            List<long[]> positions = new ArrayList<>();
+            for (int stones = 2; stones < geometry.getCellCount() * 2 / 3; stones += 3) {
+                positions.addAll(Positions.random(geometry, stones, 40, stones));
+            }
+            for (long[] position : positions) {
+                assertAnalysis(geometry, position[0], position[1]);
+            }
+        }
+    }
+
+    @Test
+    void analyzesStringBoards() {
+        String[][] board = {
+                {"X", "", ""},
+                {"", "O", ""},
+                {"", "", "X"}};
+        ThreatAnalyzer threats = new ThreatAnalyzer().analyze(board, BoardGeometry.STANDARD, "O", "X");
+        assertEquals(0, threats.getWins());
+        assertEquals(0, threats.getBlocks());
+        // X forks on either free corner; O's threats on the sides force X to answer there
+        assertEquals(1L << 2 | 1L << 6, threats.getOpponentForks());
+        assertEquals(1L << 1 | 1L << 3 | 1L << 5 | 1L << 7, threats.getCounterForks());
+    }
+
+    private static void assertAnalysis(BoardGeometry geometry, long own, long other) {
+        ThreatAnalyzer threats = new ThreatAnalyzer().analyze(geometry, own, other);
+        String position = geometry + " own " + Long.toBinaryString(own) + " other " + Long.toBinaryString(other);
+        long wins = winningCells(geometry, own, other);
+        long blocks = winningCells(geometry, other, own);
+        assertEquals(wins, threats.getWins(), position);
+        assertEquals(blocks, threats.getBlocks(), position);
+
+        // Forks as the scan sees them: a cell after which the player has two cells to win on.
+        // Only defined when the player has no win yet, which would make every cell a "fork".
+        long opponentForks = forkCells(geometry, other, own);
+        if (blocks == 0) {
+            assertEquals(opponentForks, threats.getOpponentForks(), position);
+        }
+        if (wins == 0) {
+            assertEquals(forkCells(geometry, own, other), threats.getForks(), position);
+            if (blocks == 0) {
+                assertEquals(counterForkCells(geometry, own, other, opponentForks), threats.getCounterForks(), position);
+            }
+        }
+    }
+
+    /**
+     * Cells on which the player owning mask completes a line.
+     */
+    private static long winningCells(BoardGeometry geometry, long mask, long blockers) {
+        long cells = 0;
+        for (long rest = ~(mask | blockers) & geometry.getFullMask(); rest != 0; rest &= rest - 1) {
+            if (hasLine(geometry, mask | (rest & -rest))) {
+                cells |= rest & -rest;
+            }
+        }
+        return cells;
+    }
+
+    private static long forkCells(BoardGeometry geometry, long mask, long blockers) {
+        long cells = 0;
+        for (long rest = ~(mask | blockers) & geometry.getFullMask(); rest != 0; rest &= rest - 1) {
+            if (Long.bitCount(winningCells(geometry, mask | (rest & -rest), blockers)) >= 2) {
+                cells |= rest & -rest;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Cells after which the player threatens a win on a cell that is not an opponent fork, so
+     * the forced block does not fork.
+     */
+    private static long counterForkCells(BoardGeometry geometry, long mask, long blockers, long opponentForks) {
+        long cells = 0;
+        for (long rest = ~(mask | blockers) & geometry.getFullMask(); rest != 0; rest &= rest - 1) {
+            if ((winningCells(geometry, mask | (rest & -rest), blockers) & ~opponentForks) != 0) {
+                cells |= rest & -rest;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Looks for winLength marks in a row anywhere on the board, without the line table.
+     */
+    private static boolean hasLine(BoardGeometry geometry, long mask) {
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int cell = 0; cell < geometry.getCellCount(); cell++) {
+            for (int[] direction : directions) {
+                int length = 0;
+                int row = geometry.row(cell);
+                int column = geometry.column(cell);
+                while (length < geometry.getWinLength() && row >= 0 && row < geometry.getRows()
+                        && column >= 0 && column < geometry.getColumns()
+                        && (mask & 1L << geometry.cell(row, column)) != 0) {
+                    length++;
+                    row += direction[0];
+                    column += direction[1];
+                }
+                if (length == geometry.getWinLength()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,39 @@
+#!/bin/sh
+# Compiles the engine and the unit tests on a plain JVM and runs them.
+#
+# JUNIT_JAR must point to junit-platform-console-standalone (JUnit 5), e.g. the jar from a
+# local Maven repository.
+#
+# The server's tests (test/server/java) are compiled with the server when javac is JDK 21 or
+# later, as the server needs virtual threads; with an older JDK they are skipped.
+#
+# Usage: test/run-tests.sh [extra console launcher options...]
+#   e.g. test/run-tests.sh --select-class com.aquaa.tictactoe.GameStateTest
+set -e
+
+if [ -z "$JUNIT_JAR" ]; then
+    echo "Set JUNIT_JAR to the junit-platform-console-standalone jar" >&2
+    exit 2
+fi
+
+root=$(cd "$(dirname "$0")/.." && pwd)
+build=$root/test/build
+
+# Only the engine classes the tests reach are compiled; the activities need Android
+rm -rf "$build"
+mkdir -p "$build"
+release=$(javac -version 2>&1 | sed 's/^javac \([0-9]*\).*/\1/')
+if [ "$release" -ge 21 ] 2>/dev/null; then
+    javac -d "$build" -cp "$JUNIT_JAR" -sourcepath "$root/main/java:$root/server/java" \
+        "$root"/test/java/com/aquaa/tictactoe/*.java \
+        "$root"/test/server/java/com/aquaa/tictactoe/*.java
+else
+    echo "Skipping the server tests: they need JDK 21, javac is $release" >&2
+    javac -d "$build" -cp "$JUNIT_JAR" -sourcepath "$root/main/java" \
+        "$root"/test/java/com/aquaa/tictactoe/*.java
+fi
+
+if [ $# -eq 0 ]; then
+    set -- --scan-class-path
+fi
+java -jar "$JUNIT_JAR" execute --class-path "$build" --disable-banner "$@"
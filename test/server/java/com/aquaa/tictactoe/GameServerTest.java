@@ -0,0 +1,307 @@
+package com.aquaa.tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Drives GameServer sessions through InProcessTransports: every reply is checked against the
+ * player's own copy of the board, and sessions must end when the player quits, goes idle or
+ * the server closes, also with many sessions sharing the search threads.
+ */
+final class GameServerTest {
+
+    private static final Duration REPLY_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration LONG_IDLE = Duration.ofMinutes(5);
+
+    @Test
+    void answersEveryMoveUntilTheGameEnds() throws Exception {
+        try (GameServer server = new GameServer(1, LONG_IDLE, SearchLimits.depth(4))) {
+            for (String board : new String[]{"3x3", "4x4", "5x5k4"}) {
+                InProcessTransport transport = new InProcessTransport();
+                long id = server.open(transport);
+                Player player = new Player(transport, board, new SplittableRandom(board.hashCode()));
+                int games = 3;
+                for (int game = 0; game < games; game++) {
+                    player.play(AILogic.Difficulty.DIFFICULT, game % 2 == 0);
+                }
+
+                SessionMetrics metrics = server.getMetrics(id);
+                awaitTrue(() -> metrics.getRequests() == player.requests); // Counted after the last reply
+                assertEquals(games, metrics.getGames(), board);
+                assertEquals(player.aiMoves, metrics.getAIMoves(), board);
+                assertTrue(metrics.getMaxResponseNanos() >= metrics.getMeanResponseNanos(), board);
+                assertTrue(metrics.getMaxAISearchNanos() >= metrics.getMeanAISearchNanos(), board);
+
+                transport.submit(ClientMessage.quit());
+                assertClosed(transport, "Quit");
+                awaitTrue(() -> server.getMetrics(id) == null);
+            }
+            assertEquals(0, server.getSessionCount());
+            assertEquals(0, server.getEvictedCount());
+        }
+    }
+
+    @Test
+    void perfectPlayNeverLosesOn3x3() throws Exception {
+        try (GameServer server = new GameServer(1, LONG_IDLE, AILogic.DEFAULT_LIMITS)) {
+            InProcessTransport transport = new InProcessTransport();
+            server.open(transport);
+            Player player = new Player(transport, "3x3", new SplittableRandom(7));
+            for (int game = 0; game < 20; game++) {
+                ServerMessage.Outcome outcome = player.play(AILogic.Difficulty.DIFFICULT, game % 2 == 0);
+                assertNotEquals(ServerMessage.Outcome.USER_WON, outcome, "game " + game);
+            }
+        }
+    }
+
+    @Test
+    void invalidMessagesLeaveTheGameAsItWas() throws Exception {
+        try (GameServer server = new GameServer(1, LONG_IDLE, SearchLimits.depth(2))) {
+            InProcessTransport transport = new InProcessTransport();
+            long id = server.open(transport);
+
+            transport.submit(ClientMessage.move(0));
+            assertEquals(ServerMessage.Type.ERROR, await(transport).type()); // No game yet
+            transport.submit(ClientMessage.newGame("not a board", AILogic.Difficulty.EASY, true));
+            assertEquals(ServerMessage.Type.ERROR, await(transport).type());
+
+            transport.submit(ClientMessage.newGame("3x3", AILogic.Difficulty.EASY, true));
+            assertEquals(ServerMessage.Type.GAME_STARTED, await(transport).type());
+            transport.submit(ClientMessage.move(4));
+            ServerMessage reply = await(transport);
+            assertEquals(ServerMessage.Type.AI_MOVED, reply.type());
+            for (int cell : new int[]{4, reply.cell(), -1, 9}) {
+                transport.submit(ClientMessage.move(cell));
+                assertEquals(ServerMessage.Type.ERROR, await(transport).type(), "cell " + cell);
+            }
+            assertNull(transport.await(Duration.ofMillis(50)));
+            assertEquals(1, server.getMetrics(id).getGames());
+            assertEquals(1, server.getMetrics(id).getAIMoves());
+        }
+    }
+
+    @Test
+    void idleSessionsAreEvicted() throws Exception {
+        try (GameServer server = new GameServer(1, Duration.ofMillis(200), SearchLimits.depth(2))) {
+            InProcessTransport idle = new InProcessTransport();
+            server.open(idle);
+            InProcessTransport active = new InProcessTransport();
+            long activeId = server.open(active);
+
+            // The active player keeps sending within the timeout; the idle one sends nothing
+            for (int i = 0; i < 6; i++) {
+                active.submit(ClientMessage.newGame("3x3", AILogic.Difficulty.EASY, true));
+                assertEquals(ServerMessage.Type.GAME_STARTED, await(active).type());
+                Thread.sleep(100);
+            }
+            ServerMessage closed = await(idle);
+            assertEquals(ServerMessage.Type.CLOSED, closed.type());
+            assertTrue(closed.detail().startsWith("Idle"), closed.detail());
+            awaitTrue(idle::isClosed);
+            awaitTrue(() -> server.getSessionCount() == 1);
+            assertEquals(1, server.getEvictedCount());
+            assertNotNull(server.getMetrics(activeId));
+            assertFalse(active.isClosed());
+
+            assertClosed(active, "Idle"); // Evicted in turn once it stops
+            assertEquals(2, server.getEvictedCount());
+            awaitTrue(() -> server.getSessionCount() == 0);
+        }
+    }
+
+    @Test
+    void concurrentSessionsShareTheSearchThreads() throws Exception {
+        int sessions = 40;
+        int games = 3;
+        try (GameServer server = new GameServer(2, LONG_IDLE, SearchLimits.depth(3));
+             ExecutorService players = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<InProcessTransport> transports = new ArrayList<>();
+            List<Long> ids = new ArrayList<>();
+            List<Future<Player>> results = new ArrayList<>();
+            for (int i = 0; i < sessions; i++) {
+                InProcessTransport transport = new InProcessTransport();
+                transports.add(transport);
+                ids.add(server.open(transport));
+                String board = i % 2 == 0 ? "3x3" : "4x4";
+                AILogic.Difficulty difficulty = i % 3 == 0 ? AILogic.Difficulty.ADVANCED : AILogic.Difficulty.DIFFICULT;
+                SplittableRandom random = new SplittableRandom(i);
+                results.add(players.submit(() -> {
+                    Player player = new Player(transport, board, random);
+                    for (int game = 0; game < games; game++) {
+                        player.play(difficulty, game % 2 == 0);
+                    }
+                    return player;
+                }));
+            }
+
+            for (int i = 0; i < sessions; i++) {
+                Player player = results.get(i).get();
+                SessionMetrics metrics = server.getMetrics(ids.get(i));
+                awaitTrue(() -> metrics.getRequests() == player.requests);
+                assertEquals(games, metrics.getGames(), "session " + i);
+                assertEquals(player.aiMoves, metrics.getAIMoves(), "session " + i);
+            }
+            assertEquals(sessions, server.getSessionCount());
+            assertEquals(sessions, server.getAllMetrics().size());
+
+            for (InProcessTransport transport : transports) {
+                transport.submit(ClientMessage.quit());
+            }
+            for (InProcessTransport transport : transports) {
+                assertClosed(transport, "Quit");
+            }
+            awaitTrue(() -> server.getSessionCount() == 0);
+        }
+    }
+
+    @Test
+    void closingTheServerClosesEverySession() throws Exception {
+        List<InProcessTransport> transports = new ArrayList<>();
+        GameServer server = new GameServer(1, LONG_IDLE, SearchLimits.depth(2));
+        for (int i = 0; i < 5; i++) {
+            InProcessTransport transport = new InProcessTransport();
+            transports.add(transport);
+            server.open(transport);
+        }
+        server.close();
+        for (InProcessTransport transport : transports) {
+            assertClosed(transport, "Server shutting down");
+        }
+        assertEquals(0, server.getSessionCount());
+        assertEquals(0, server.getEvictedCount());
+    }
+
+    /**
+     * A player with their own copy of the board, playing random free cells.
+     */
+    private static final class Player {
+        final InProcessTransport transport;
+        final String board;
+        final BoardGeometry geometry;
+        final SplittableRandom random;
+        long userMask;
+        long aiMask;
+        long requests;
+        long aiMoves;
+
+        Player(InProcessTransport transport, String board, SplittableRandom random) {
+            this.transport = transport;
+            this.board = board;
+            this.geometry = BoardGeometry.parse(board);
+            this.random = random;
+        }
+
+        /**
+         * Plays one game to its end, checking every reply.
+         */
+        ServerMessage.Outcome play(AILogic.Difficulty difficulty, boolean userFirst) throws InterruptedException {
+            userMask = 0;
+            aiMask = 0;
+            transport.submit(ClientMessage.newGame(board, difficulty, userFirst));
+            requests++;
+            assertEquals(ServerMessage.Type.GAME_STARTED, await(transport).type());
+            if (!userFirst) {
+                ServerMessage.Outcome outcome = aiReply();
+                assertNull(outcome, "the game ended on the first move");
+            }
+            while (true) {
+                int cell = randomFreeCell();
+                userMask |= 1L << cell;
+                transport.submit(ClientMessage.move(cell));
+                requests++;
+                ServerMessage.Outcome outcome = localOutcome();
+                if (outcome != null) {
+                    assertGameOver(outcome);
+                    return outcome;
+                }
+                outcome = aiReply();
+                if (outcome != null) {
+                    return outcome;
+                }
+            }
+        }
+
+        /**
+         * Reads the AI's move and, if it ended the game, the game's end.
+         *
+         * @return The outcome if the game is over, else null.
+         */
+        private ServerMessage.Outcome aiReply() throws InterruptedException {
+            ServerMessage reply = await(transport);
+            assertEquals(ServerMessage.Type.AI_MOVED, reply.type(), String.valueOf(reply));
+            assertTrue(reply.cell() >= 0 && reply.cell() < geometry.getCellCount(), "cell " + reply.cell());
+            assertEquals(0, ((userMask | aiMask) >>> reply.cell()) & 1, "cell " + reply.cell() + " is taken");
+            aiMask |= 1L << reply.cell();
+            aiMoves++;
+            ServerMessage.Outcome outcome = localOutcome();
+            if (outcome != null) {
+                assertGameOver(outcome);
+            }
+            return outcome;
+        }
+
+        private void assertGameOver(ServerMessage.Outcome expected) throws InterruptedException {
+            ServerMessage reply = await(transport);
+            assertEquals(ServerMessage.Type.GAME_OVER, reply.type(), String.valueOf(reply));
+            assertEquals(expected, reply.outcome());
+        }
+
+        private ServerMessage.Outcome localOutcome() {
+            if (geometry.isWin(userMask)) {
+                return ServerMessage.Outcome.USER_WON;
+            }
+            if (geometry.isWin(aiMask)) {
+                return ServerMessage.Outcome.AI_WON;
+            }
+            return (userMask | aiMask) == geometry.getFullMask() ? ServerMessage.Outcome.DRAW : null;
+        }
+
+        private int randomFreeCell() {
+            int cell;
+            do {
+                cell = random.nextInt(geometry.getCellCount());
+            } while (((userMask | aiMask) >>> cell & 1) != 0);
+            return cell;
+        }
+    }
+
+    private static ServerMessage await(InProcessTransport transport) throws InterruptedException {
+        ServerMessage message = transport.await(REPLY_TIMEOUT);
+        assertNotNull(message, "no reply within " + REPLY_TIMEOUT);
+        return message;
+    }
+
+    private static void assertClosed(InProcessTransport transport, String reason) throws InterruptedException {
+        ServerMessage message = await(transport);
+        assertEquals(ServerMessage.Type.CLOSED, message.type(), String.valueOf(message));
+        assertTrue(message.detail().startsWith(reason), message.detail());
+        awaitTrue(transport::isClosed);
+        assertNull(transport.await(Duration.ofMillis(20)), "a message after CLOSED");
+    }
+
+    /**
+     * Waits for a condition that another thread makes true, e.g. a session's clean-up after
+     * its last message.
+     */
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + REPLY_TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() - deadline < 0, "condition not met within " + REPLY_TIMEOUT);
+            Thread.sleep(5);
+        }
+    }
+}
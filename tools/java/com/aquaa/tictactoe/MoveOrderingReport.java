@@ -0,0 +1,60 @@
+package com.aquaa.tictactoe;
+
+/**
+ * Counts the nodes the DIFFICULT search visits with and without move ordering.
+ *
+ * For each board a DIFFICULT-vs-DIFFICULT game is played at a fixed depth, once with each
+ * setting, and the nodes of every move are added up. Both runs must choose the same moves
+ * (ordering changes the work, not the result), so both play the same game.
+ *
+ * Usage: MoveOrderingReport [depth]
+ */
+public class MoveOrderingReport {
+
+    private static final String[] BOARDS = {"3x3", "4x4", "5x5k4", "7x7k5"};
+    private static final int DEFAULT_DEPTH = 6;
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+
+        System.out.println("board           depth  moves  nodes unordered   nodes ordered  ratio");
+        for (String spec : BOARDS) {
+            BoardGeometry geometry = BoardGeometry.parse(spec);
+            // 3x3 is searched to the end, as the game does when the perfect-play table is off
+            int searchDepth = geometry == BoardGeometry.STANDARD ? geometry.getCellCount() : depth;
+            long[] unordered = playGame(geometry, searchDepth, false);
+            long[] ordered = playGame(geometry, searchDepth, true);
+            if (unordered[1] != ordered[1]) {
+                throw new IllegalStateException("Move ordering changed the game on " + geometry);
+            }
+            System.out.printf("%-15s %5d %6d %16d %15d %6.2f%n", spec, searchDepth, ordered[2],
+                    unordered[0], ordered[0], (double) unordered[0] / ordered[0]);
+        }
+    }
+
+    /**
+     * Plays a game where both sides always take the first of their best moves.
+     *
+     * @return The total nodes, a hash of the moves played and the number of moves.
+     */
+    private static long[] playGame(BoardGeometry geometry, int depth, boolean moveOrdering) {
+        SearchEngine engine = new SearchEngine(new TranspositionTable(20));
+        engine.setMoveOrdering(moveOrdering);
+        long ownMask = 0;
+        long otherMask = 0;
+        long nodes = 0;
+        long movesHash = 0;
+        int moves = 0;
+        while (!geometry.isWin(otherMask) && (ownMask | otherMask) != geometry.getFullMask()) {
+            long best = engine.search(geometry, ownMask, otherMask, SearchLimits.depth(depth));
+            nodes += engine.getNodes();
+            int cell = Long.numberOfTrailingZeros(best);
+            movesHash = movesHash * 31 + cell;
+            moves++;
+            long next = otherMask;
+            otherMask = ownMask | (1L << cell);
+            ownMask = next;
+        }
+        return new long[]{nodes, movesHash, moves};
+    }
+}
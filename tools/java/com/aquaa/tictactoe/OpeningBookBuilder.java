@@ -0,0 +1,183 @@
+package com.aquaa.tictactoe;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Builds an OpeningBook from self-play. DIFFICULT plays both sides for the first plies of
+ * every game; each move it plays is counted for the canonical form of its position, and the
+ * counts become the weights of the book moves. With probability --explore a side plays a
+ * random move instead (not counted), so the book also covers positions the AI would not
+ * reach against itself.
+ *
+ * Usage: OpeningBookBuilder [--boards 4x4,5x5k4,7x7k5] [--games N] [--plies N]
+ *        [--limits depth:N|nodes:N|time:MS] [--explore P] [--min-count N] [--threads N]
+ *        [--seed N] [--output opening_book.bin]
+ */
+public class OpeningBookBuilder {
+
+    private static final String FIRST_SYMBOL = "X";
+    private static final String SECOND_SYMBOL = "O";
+
+    private String boards = "4x4,5x5k4,7x7k5";
+    private int games = 200;
+    private int plies = 6;
+    private SearchLimits limits = SearchLimits.time(200);
+    private double explore = 0.2;
+    private int minCount = 1;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long seed = 1;
+    private String outputPath = "opening_book.bin";
+
+    // Position key -> how often each canonical cell was played there
+    private final Map<Long, AtomicIntegerArray> counts = new ConcurrentHashMap<>();
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        OpeningBookBuilder builder = new OpeningBookBuilder();
+        builder.parseArguments(args);
+        builder.run();
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--boards":
+                    boards = value;
+                    break;
+                case "--games":
+                    games = Integer.parseInt(value);
+                    break;
+                case "--plies":
+                    plies = Integer.parseInt(value);
+                    break;
+                case "--limits":
+                    limits = parseLimits(value);
+                    break;
+                case "--explore":
+                    explore = Double.parseDouble(value);
+                    break;
+                case "--min-count":
+                    minCount = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--output":
+                    outputPath = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    private static SearchLimits parseLimits(String spec) {
+        String[] parts = spec.split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Limits must look like depth:4, nodes:100000 or time:50, got " + spec);
+        }
+        switch (parts[0]) {
+            case "depth":
+                return SearchLimits.depth(Integer.parseInt(parts[1]));
+            case "nodes":
+                return SearchLimits.nodes(Long.parseLong(parts[1]));
+            case "time":
+                return SearchLimits.time(Long.parseLong(parts[1]));
+            default:
+                throw new IllegalArgumentException("Unknown limit " + parts[0]);
+        }
+    }
+
+    private void run() throws IOException, InterruptedException, ExecutionException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            String[] specs = boards.split(",");
+            for (int b = 0; b < specs.length; b++) {
+                BoardGeometry geometry = BoardGeometry.parse(specs[b]);
+                int boardIndex = b;
+                long start = System.nanoTime();
+                pool.submit(() -> IntStream.range(0, games).parallel()
+                        .forEach(game -> playGame(geometry, RandomSource.seeded(gameSeed(boardIndex, game))))).get();
+                System.out.printf("%s: %d games in %.1f s, %d positions so far%n", geometry, games,
+                        (System.nanoTime() - start) / 1e9, counts.size());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        write();
+    }
+
+    /**
+     * Plays the opening of one game, counting every move DIFFICULT chooses.
+     */
+    private void playGame(BoardGeometry geometry, RandomSource random) {
+        GameState game = new GameState(geometry);
+        String[][] board = game.getCurrentBoardState();
+        String[] symbols = {FIRST_SYMBOL, SECOND_SYMBOL};
+        for (int turn = 0; game.getMoveCount() < plies && game.checkWinner() == null && !game.isBoardFull(); turn ^= 1) {
+            String own = symbols[turn];
+            String other = symbols[1 - turn];
+            // Exploring plays the EASY AI's move: a random empty cell
+            boolean exploring = random.nextInt(1 << 20) < explore * (1 << 20);
+            int cell = AILogic.getAIMoveCell(board, geometry, exploring ? AILogic.Difficulty.EASY : AILogic.Difficulty.DIFFICULT,
+                    own, other, limits, CancellationToken.NONE, random);
+            if (!exploring) {
+                long ownMask = geometry.fromBoard(board, own);
+                long otherMask = geometry.fromBoard(board, other);
+                int canonicalCell = geometry.getSymmetryCell(geometry.canonicalSymmetry(ownMask, otherMask), cell);
+                counts.computeIfAbsent(OpeningBook.key(geometry, ownMask, otherMask),
+                        key -> new AtomicIntegerArray(BoardGeometry.MAX_CELLS)).incrementAndGet(canonicalCell);
+            }
+            game.makeMove(geometry.row(cell), geometry.column(cell), own);
+        }
+    }
+
+    /**
+     * Writes the records sorted by key, so the book can binary search them.
+     */
+    private void write() throws IOException {
+        TreeMap<Long, AtomicIntegerArray> sorted = new TreeMap<>(counts);
+        List<long[]> records = new ArrayList<>();
+        for (Map.Entry<Long, AtomicIntegerArray> entry : sorted.entrySet()) {
+            AtomicIntegerArray cells = entry.getValue();
+            for (int cell = 0; cell < cells.length(); cell++) {
+                int count = cells.get(cell);
+                if (count >= minCount) {
+                    records.add(new long[]{entry.getKey(), cell << 24 | Math.min(count, OpeningBook.MAX_WEIGHT)});
+                }
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputPath)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeInt(records.size());
+            for (long[] record : records) {
+                out.writeLong(record[0]);
+                out.writeInt((int) record[1]);
+            }
+        }
+        System.out.println("Wrote " + records.size() + " moves for " + sorted.size() + " positions to " + outputPath);
+    }
+
+    private long gameSeed(int boardIndex, int game) {
+        long value = seed * 0x9E3779B97F4A7C15L + ((long) boardIndex << 32 | game);
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,60 @@
+package com.aquaa.tictactoe;
+
+/**
+ * Measures how the DIFFICULT search scales with the number of threads.
+ *
+ * Every board is searched to a fixed depth once per thread count, each time with an empty
+ * transposition table. A depth limit makes the result independent of the thread count, so
+ * the report also checks that every run picked the same moves with the same score.
+ *
+ * Usage: ParallelSpeedupReport [depth] [maxThreads]
+ */
+public class ParallelSpeedupReport {
+
+    private static final int[][] BOARDS = {{4, 4, 4}, {5, 5, 4}, {7, 7, 5}};
+    private static final int DEFAULT_DEPTH = 7;
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        boolean allIdentical = true;
+        for (int[] shape : BOARDS) {
+            BoardGeometry geometry = BoardGeometry.of(shape[0], shape[1], shape[2]);
+            // One stone each in the middle, so the position is not trivially symmetric
+            long ownMask = 1L << geometry.cell(geometry.getRows() / 2, geometry.getColumns() / 2);
+            long otherMask = 1L << geometry.cell(geometry.getRows() / 2 - 1, geometry.getColumns() / 2);
+            int searchDepth = Math.min(depth, geometry.getCellCount() - 2);
+
+            System.out.println(geometry + ", depth " + searchDepth);
+            System.out.println("threads      ms  speedup       nodes  identical");
+            long baseNanos = 0;
+            long baseMoves = 0;
+            int baseScore = 0;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                SearchEngine engine = new SearchEngine(new TranspositionTable(20), threads);
+                long start = System.nanoTime();
+                long moves = engine.search(geometry, ownMask, otherMask, SearchLimits.depth(searchDepth));
+                long nanos = System.nanoTime() - start;
+                int score = engine.getBestScore();
+                long nodes = engine.getNodes();
+                engine.shutdown();
+
+                if (threads == 1) {
+                    baseNanos = nanos;
+                    baseMoves = moves;
+                    baseScore = score;
+                }
+                boolean identical = moves == baseMoves && score == baseScore;
+                allIdentical &= identical;
+                System.out.printf("%7d %7.1f %8.2f %11d  %s%n",
+                        threads, nanos / 1e6, (double) baseNanos / nanos, nodes, identical ? "yes" : "NO");
+            }
+            System.out.println();
+        }
+        if (!allIdentical) {
+            System.out.println("Parallel search gave different results than the single-threaded search");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.aquaa.tictactoe;
+
+/**
+ * Checks every position of the 3x3 perfect-play table against a full minimax search: the
+ * value and the whole set of optimal moves must match. Exits with status 1 on a mismatch,
+ * so it can guard changes to the search or the table.
+ *
+ * Usage: PerfectPlayTableCheck
+ */
+public class PerfectPlayTableCheck {
+
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        PerfectPlayTable table = PerfectPlayTable.getInstance();
+        long solvedNanos = System.nanoTime() - start;
+        int mismatches = table.verify();
+        System.out.printf("Solved %d positions in %.1f ms, verified in %.1f ms: %d mismatches%n",
+                table.getPositionCount(), solvedNanos / 1e6, (System.nanoTime() - start - solvedNanos) / 1e6, mismatches);
+        if (mismatches != 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.aquaa.tictactoe;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless AI-vs-AI tournament. Every engine plays every engine (itself included) with both
+ * colours, driving GameState directly, on a work-stealing ForkJoinPool over all cores.
+ *
+ * Each game has its own generator seeded from the tournament seed, the pairing and the game
+ * number, so a game can be replayed alone. Moves go through AILogic.getAIMoveCell on the
+ * game's own board, so playing allocates nothing per move. With a depth limit (the default) the whole
+ * tournament is reproducible; time limits make DIFFICULT depend on the machine.
+ *
+ * While games run, a snapshot of every pairing is appended to the CSV report once per
+ * interval, and a summary line is printed.
+ *
+ * Usage: SelfPlayTournament [--games N] [--board 3x3|7x7k5] [--engines EASY,AVERAGE,DIFFICULT]
+ *        [--limits depth:4|nodes:N|time:MS] [--threads N] [--seed N] [--report file.csv] [--interval MS]
+ */
+public class SelfPlayTournament {
+
+    // Ranges of games are split until they are this small; each piece is one unit of work to steal
+    private static final int GAMES_PER_TASK = 64;
+
+    private static final String FIRST_SYMBOL = "X";
+    private static final String SECOND_SYMBOL = "O";
+
+    private int gamesPerPairing = 10_000;
+    private BoardGeometry geometry = BoardGeometry.STANDARD;
+    private String engineNames = "EASY,AVERAGE,DIFFICULT";
+    private SearchLimits limits = SearchLimits.depth(4);
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long seed = 1;
+    private String reportPath = "tournament.csv";
+    private long intervalMillis = 1000;
+
+    /** Results of one engine playing first against another. */
+    private static final class Pairing {
+        final int index;
+        final TournamentEngine first;
+        final TournamentEngine second;
+        final LongAdder firstWins = new LongAdder();
+        final LongAdder draws = new LongAdder();
+        final LongAdder secondWins = new LongAdder();
+
+        Pairing(int index, TournamentEngine first, TournamentEngine second) {
+            this.index = index;
+            this.first = first;
+            this.second = second;
+        }
+
+        long games() {
+            return firstWins.sum() + draws.sum() + secondWins.sum();
+        }
+    }
+
+    /** Plays the games [from, to) of a pairing, splitting the range while it is large. */
+    private final class GameRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Pairing pairing; // Tasks are never serialized
+        private final int from;
+        private final int to;
+
+        GameRange(Pairing pairing, int from, int to) {
+            this.pairing = pairing;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GAMES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new GameRange(pairing, from, middle), new GameRange(pairing, middle, to));
+                return;
+            }
+            for (int game = from; game < to; game++) {
+                int result = playGame(pairing, gameSeed(pairing.index, game));
+                if (result > 0) {
+                    pairing.firstWins.increment();
+                } else if (result < 0) {
+                    pairing.secondWins.increment();
+                } else {
+                    pairing.draws.increment();
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SelfPlayTournament tournament = new SelfPlayTournament();
+        tournament.parseArguments(args);
+        tournament.run();
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--games":
+                    gamesPerPairing = Integer.parseInt(value);
+                    break;
+                case "--board":
+                    geometry = BoardGeometry.parse(value);
+                    break;
+                case "--engines":
+                    engineNames = value;
+                    break;
+                case "--limits":
+                    limits = parseLimits(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--report":
+                    reportPath = value;
+                    break;
+                case "--interval":
+                    intervalMillis = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    private static SearchLimits parseLimits(String spec) {
+        String[] parts = spec.split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Limits must look like depth:4, nodes:100000 or time:50, got " + spec);
+        }
+        switch (parts[0]) {
+            case "depth":
+                return SearchLimits.depth(Integer.parseInt(parts[1]));
+            case "nodes":
+                return SearchLimits.nodes(Long.parseLong(parts[1]));
+            case "time":
+                return SearchLimits.time(Long.parseLong(parts[1]));
+            default:
+                throw new IllegalArgumentException("Unknown limit " + parts[0]);
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+        List<TournamentEngine> engines = new ArrayList<>();
+        for (String name : engineNames.split(",")) {
+            engines.add(TournamentEngine.forDifficulty(AILogic.Difficulty.valueOf(name.trim()), limits));
+        }
+        List<Pairing> pairings = new ArrayList<>();
+        for (TournamentEngine first : engines) {
+            for (TournamentEngine second : engines) {
+                pairings.add(new Pairing(pairings.size(), first, second));
+            }
+        }
+
+        System.out.println(pairings.size() + " pairings x " + gamesPerPairing + " games on " + geometry
+                + ", " + threads + " threads, seed " + seed);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try (PrintWriter report = new PrintWriter(new FileWriter(reportPath))) {
+            report.println("elapsed_ms,first,second,games,first_wins,draws,second_wins,games_per_second");
+
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (Pairing pairing : pairings) {
+                tasks.add(pool.submit(new GameRange(pairing, 0, gamesPerPairing)));
+            }
+            while (true) {
+                Thread.sleep(intervalMillis);
+                boolean done = true;
+                for (ForkJoinTask<?> task : tasks) {
+                    if (task.isCompletedAbnormally()) {
+                        task.join(); // Rethrows the failure of the game that broke
+                    }
+                    done &= task.isDone();
+                }
+                writeSnapshot(report, pairings, System.nanoTime() - start);
+                if (done) {
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Appends one row per pairing and prints a progress line.
+     */
+    private void writeSnapshot(PrintWriter report, List<Pairing> pairings, long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos / 1e9, 1e-9);
+        long totalGames = 0;
+        for (Pairing pairing : pairings) {
+            long games = pairing.games();
+            totalGames += games;
+            report.printf(Locale.ROOT, "%d,%s,%s,%d,%d,%d,%d,%.1f%n", elapsedNanos / 1_000_000,
+                    pairing.first.getName(), pairing.second.getName(), games,
+                    pairing.firstWins.sum(), pairing.draws.sum(), pairing.secondWins.sum(), games / seconds);
+        }
+        report.flush();
+
+        StringBuilder line = new StringBuilder();
+        line.append(String.format(Locale.ROOT, "%6.1fs %,d games (%,.0f/s)", seconds, totalGames, totalGames / seconds));
+        for (Pairing pairing : pairings) {
+            line.append(String.format(Locale.ROOT, " | %s-%s %d/%d/%d", pairing.first.getName(), pairing.second.getName(),
+                    pairing.firstWins.sum(), pairing.draws.sum(), pairing.secondWins.sum()));
+        }
+        System.out.println(line);
+    }
+
+    /**
+     * Plays one game with the first engine as X.
+     *
+     * @return 1 if the first engine won, -1 if the second did, 0 for a draw.
+     */
+    private int playGame(Pairing pairing, long gameSeed) {
+        RandomSource random = RandomSource.seeded(gameSeed);
+        GameState game = new GameState(geometry);
+        TournamentEngine[] engines = {pairing.first, pairing.second};
+        String[] symbols = {FIRST_SYMBOL, SECOND_SYMBOL};
+        for (int turn = 0; game.checkWinner() == null && !game.isBoardFull(); turn ^= 1) {
+            int cell = engines[turn].move(game, symbols[turn], symbols[1 - turn], random);
+            if (cell == AILogic.NO_MOVE || !game.makeMove(geometry.row(cell), geometry.column(cell), symbols[turn])) {
+                throw new IllegalStateException(engines[turn].getName() + " made no legal move in game seeded " + gameSeed);
+            }
+        }
+        String winner = game.checkWinner();
+        if (winner == null) {
+            return 0;
+        }
+        return winner.equals(FIRST_SYMBOL) ? 1 : -1;
+    }
+
+    /**
+     * Derives the seed of one game, so every game gets an independent, replayable generator.
+     */
+    private long gameSeed(int pairingIndex, int game) {
+        long value = seed * 0x9E3779B97F4A7C15L + ((long) pairingIndex << 32 | game);
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,252 @@
+package com.aquaa.tictactoe;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Solves every legal position of a small board and writes them as a Tablebase.
+ *
+ * The solver works backwards from the full board: positions with the most stones first, as
+ * every move adds a stone, so all positions a move leads to are solved before the position
+ * itself. Each position is then one lookup per empty cell. The positions of one stone count
+ * are solved in parallel.
+ *
+ * Usage: TablebaseGenerator [--board 4x4] [--threads N] [--verify N] [--seed N]
+ *        [--output tablebase_4x4.bin]
+ *
+ * --verify checks the written file against a full search on N random positions.
+ */
+public class TablebaseGenerator {
+
+    private BoardGeometry geometry = BoardGeometry.of(4, 4, 4);
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int verifyPositions = 0;
+    private long seed = 1;
+    private String outputPath = "tablebase_4x4.bin";
+
+    private long[] groupOffsets;
+    // Stored value of every position, see Tablebase; the solved part is read by later groups
+    private byte[] values;
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        TablebaseGenerator generator = new TablebaseGenerator();
+        generator.parseArguments(args);
+        generator.run();
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--board":
+                    geometry = BoardGeometry.parse(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--verify":
+                    verifyPositions = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--output":
+                    outputPath = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (geometry.getCellCount() > Tablebase.MAX_CELLS) {
+            throw new IllegalArgumentException("A tablebase holds boards of up to " + Tablebase.MAX_CELLS
+                    + " cells, got " + geometry);
+        }
+    }
+
+    private void run() throws IOException, InterruptedException, ExecutionException {
+        int cells = geometry.getCellCount();
+        groupOffsets = Tablebase.groupOffsets(cells);
+        values = new byte[(int) groupOffsets[cells + 1]];
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (int stones = cells - 1; stones >= 0; stones--) {
+                long[] occupiedMasks = occupiedMasks(cells, stones);
+                int group = stones;
+                pool.submit(() -> IntStream.range(0, occupiedMasks.length).parallel()
+                        .forEach(i -> solveOccupied(occupiedMasks[i], group))).get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.printf("%s: solved %,d positions in %.1f s%n", geometry, values.length, (System.nanoTime() - start) / 1e9);
+        printSummary();
+        write();
+
+        if (verifyPositions > 0) {
+            verify(Tablebase.map(new File(outputPath)));
+        }
+    }
+
+    /**
+     * Returns every mask of the given number of the board's cells, in increasing order.
+     */
+    private static long[] occupiedMasks(int cells, int stones) {
+        long count = 1;
+        for (int i = 0; i < stones; i++) {
+            count = count * (cells - i) / (i + 1);
+        }
+        long[] masks = new long[(int) count];
+        long mask = (1L << stones) - 1;
+        for (int i = 0; i < masks.length; i++) {
+            masks[i] = mask;
+            mask = nextSubset(mask);
+        }
+        return masks;
+    }
+
+    /**
+     * Returns the next larger mask with the same number of bits (Gosper's hack).
+     */
+    private static long nextSubset(long mask) {
+        if (mask == 0) {
+            return 0;
+        }
+        long lowest = mask & -mask;
+        long ripple = mask + lowest;
+        return ripple | ((mask ^ ripple) >>> 2) / lowest;
+    }
+
+    /**
+     * Solves every split of the occupied cells into the mover's half and the other player's.
+     */
+    private void solveOccupied(long occupied, int stones) {
+        int[] occupiedCells = new int[stones];
+        int count = 0;
+        for (long rest = occupied; rest != 0; rest &= rest - 1) {
+            occupiedCells[count++] = Long.numberOfTrailingZeros(rest);
+        }
+        int own = stones / 2;
+        long subset = (1L << own) - 1;
+        long end = 1L << stones;
+        do {
+            long ownMask = 0;
+            for (long rest = subset; rest != 0; rest &= rest - 1) {
+                ownMask |= 1L << occupiedCells[Long.numberOfTrailingZeros(rest)];
+            }
+            long otherMask = occupied & ~ownMask;
+            long index = Tablebase.index(geometry.getCellCount(), groupOffsets, ownMask, otherMask);
+            values[(int) index] = (byte) Tablebase.value(solve(ownMask, otherMask));
+            subset = nextSubset(subset);
+        } while (subset < end && subset != 0);
+    }
+
+    /**
+     * Returns the result of the position in plies, see Tablebase.plies. Positions where the
+     * game is over are 0, as the table never looks them up.
+     */
+    private int solve(long ownMask, long otherMask) {
+        if (geometry.isWin(ownMask) || geometry.isWin(otherMask)) {
+            return 0;
+        }
+        if (SearchEngine.completingCells(geometry, ownMask, otherMask) != 0) {
+            return 1;
+        }
+        long full = geometry.getFullMask();
+        int bestPlies = 0;
+        int bestRating = Integer.MIN_VALUE;
+        for (long rest = ~(ownMask | otherMask) & full; rest != 0; rest &= rest - 1) {
+            long moved = ownMask | (rest & -rest);
+            int plies = 0;
+            if ((moved | otherMask) != full) {
+                int reply = Tablebase.plies(values[(int) Tablebase.index(geometry.getCellCount(), groupOffsets, otherMask, moved)]);
+                plies = reply > 0 ? -(reply + 1) : reply < 0 ? -reply + 1 : 0;
+            }
+            // Quickest win first, then a draw, then the slowest loss
+            int rating = plies > 0 ? 100 - plies : plies < 0 ? -100 - plies : 0;
+            if (rating > bestRating) {
+                bestRating = rating;
+                bestPlies = plies;
+            }
+        }
+        return bestPlies;
+    }
+
+    private void printSummary() {
+        long[] counts = new long[Tablebase.MAX_VALUE + 1];
+        for (byte value : values) {
+            counts[value]++;
+        }
+        StringBuilder line = new StringBuilder("Values:");
+        for (int value = 0; value <= Tablebase.MAX_VALUE; value++) {
+            if (counts[value] > 0) {
+                int plies = Tablebase.plies(value);
+                line.append(' ').append(plies == 0 ? "draw/over" : plies > 0 ? "win" + plies : "loss" + -plies)
+                        .append('=').append(counts[value]);
+            }
+        }
+        System.out.println(line);
+    }
+
+    private void write() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputPath)))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(Tablebase.VERSION);
+            out.writeInt(geometry.getRows());
+            out.writeInt(geometry.getColumns());
+            out.writeInt(geometry.getWinLength());
+            out.writeInt(Tablebase.BITS_PER_POSITION);
+            out.writeInt(values.length);
+            for (int i = 0; i < values.length; i += 2) {
+                int high = i + 1 < values.length ? values[i + 1] : 0;
+                out.writeByte(high << 4 | values[i]);
+            }
+        }
+        System.out.println("Wrote " + new File(outputPath).length() + " bytes to " + outputPath);
+    }
+
+    /**
+     * Compares the best moves of random positions with those of a full search.
+     */
+    private void verify(Tablebase tablebase) {
+        SearchEngine engine = new SearchEngine(new TranspositionTable(20));
+        SplittableRandom random = new SplittableRandom(seed);
+        int cells = geometry.getCellCount();
+        int checked = 0;
+        int mismatches = 0;
+        while (checked < verifyPositions) {
+            // Random legal positions; fewer stones than this take too long to search fully
+            int stones = cells / 2 + random.nextInt(cells - cells / 2);
+            long ownMask = 0;
+            long otherMask = 0;
+            for (int placed = 0; placed < stones; placed++) {
+                int cell;
+                do {
+                    cell = random.nextInt(cells);
+                } while (((ownMask | otherMask) & 1L << cell) != 0);
+                if (placed % 2 == stones % 2) {
+                    ownMask |= 1L << cell;
+                } else {
+                    otherMask |= 1L << cell;
+                }
+            }
+            if (!tablebase.contains(ownMask, otherMask)) {
+                continue;
+            }
+            long searched = engine.search(geometry, ownMask, otherMask, SearchLimits.UNLIMITED);
+            if (searched != tablebase.getBestMoves(ownMask, otherMask)
+                    || engine.getBestScore() != tablebase.getScore(ownMask, otherMask)) {
+                mismatches++;
+            }
+            checked++;
+        }
+        System.out.println("Verified " + checked + " positions against a full search: " + mismatches + " mismatches");
+    }
+}
@@ -0,0 +1,40 @@
+package com.aquaa.tictactoe;
+
+/**
+ * A player in the self-play tournament. Implementations must be safe to call from several
+ * threads at once, each with its own game.
+ */
+public interface TournamentEngine {
+
+    /**
+     * Name used in reports; must be unique within a tournament.
+     */
+    String getName();
+
+    /**
+     * Chooses a move for the player owning ownSymbol.
+     *
+     * @param game The game in progress; must not be changed.
+     * @param random The game's seeded generator, for every random choice the engine makes.
+     * @return The cell of the move, or AILogic.NO_MOVE if the engine has none.
+     */
+    int move(GameState game, String ownSymbol, String otherSymbol, RandomSource random);
+
+    /**
+     * Returns the AILogic player of the given difficulty, searching within the given limits.
+     */
+    static TournamentEngine forDifficulty(AILogic.Difficulty difficulty, SearchLimits limits) {
+        return new TournamentEngine() {
+            @Override
+            public String getName() {
+                return difficulty.name();
+            }
+
+            @Override
+            public int move(GameState game, String ownSymbol, String otherSymbol, RandomSource random) {
+                return AILogic.getAIMoveCell(game.getCurrentBoardState(), game.getGeometry(), difficulty, ownSymbol, otherSymbol,
+                        limits, CancellationToken.NONE, random);
+            }
+        };
+    }
+}